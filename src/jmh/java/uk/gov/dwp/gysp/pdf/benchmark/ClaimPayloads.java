@@ -0,0 +1,108 @@
+package uk.gov.dwp.gysp.pdf.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Representative claims for the benchmarks, built in code so each shape can be scaled without checking in large json
+ * files.
+ */
+final class ClaimPayloads {
+
+	static final String ARRAYS = "arrays";
+	static final String FLAT = "flat";
+	static final String LARGE = "large";
+	static final String NESTED = "nested";
+	static final String TEXT = "text";
+	static final String UNICODE = "unicode";
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	private ClaimPayloads() {
+	}
+
+	static JsonNode create(final String payload) {
+		switch (payload) {
+		case FLAT:
+			return flat(20);
+		case NESTED:
+			return nested(8, 3);
+		case ARRAYS:
+			return arrays(10, 10);
+		case UNICODE:
+			return unicode(20);
+		case LARGE:
+			return flat(400);
+		case TEXT:
+			return text(20, 80);
+		default:
+			throw new IllegalArgumentException("Unknown payload " + payload);
+		}
+	}
+
+	/**
+	 * Question and answer pairs, roughly one template page per 15 fields.
+	 */
+	private static ObjectNode flat(final int fields) {
+		final ObjectNode claim = OBJECT_MAPPER.createObjectNode();
+		for (int i = 0; i < fields; i++) {
+			claim.put("Question " + i, "Answer to question " + i);
+		}
+		return claim;
+	}
+
+	private static ObjectNode nested(final int depth, final int fields) {
+		final ObjectNode claim = OBJECT_MAPPER.createObjectNode();
+		ObjectNode section = claim;
+		for (int level = 0; level < depth; level++) {
+			for (int i = 0; i < fields; i++) {
+				section.put("Level " + level + " question " + i, "Answer " + i);
+			}
+			section = section.putObject("Level " + (level + 1) + " section");
+		}
+		section.put("Deepest question", "Deepest answer");
+		return claim;
+	}
+
+	private static ObjectNode arrays(final int lists, final int items) {
+		final ObjectNode claim = OBJECT_MAPPER.createObjectNode();
+		for (int list = 0; list < lists; list++) {
+			final ArrayNode answers = claim.putArray("List question " + list);
+			for (int i = 0; i < items; i++) {
+				if (i % 2 == 0) {
+					answers.add("Answer " + i);
+				} else {
+					answers.addObject().put("Item " + i, "Answer " + i);
+				}
+			}
+		}
+		return claim;
+	}
+
+	/**
+	 * Long free text answers, each wrapped over several lines.
+	 */
+	private static ObjectNode text(final int fields, final int words) {
+		final StringBuilder answer = new StringBuilder();
+		for (int i = 0; i < words; i++) {
+			answer.append(i % 7 == 0 ? "circumstances" : "the claimant").append(' ');
+		}
+		final ObjectNode claim = OBJECT_MAPPER.createObjectNode();
+		for (int i = 0; i < fields; i++) {
+			claim.put("Details of change " + i, answer.toString().trim());
+		}
+		return claim;
+	}
+
+	private static ObjectNode unicode(final int fields) {
+		final String[] answers = { "Gŵr gweddw, Ŷ Fferm, Llanfair-ym-Muallt", "Zoë Brontë, rue de l'Église, Besançon",
+				"Ελένη Παπαδοπούλου", "Ольга Смирнова", "Łódź, Gdańsk, Kraków", "Øystein Ærø, Ålesund" };
+		final ObjectNode claim = OBJECT_MAPPER.createObjectNode();
+		for (int i = 0; i < fields; i++) {
+			claim.put("Cwestiwn " + i + " / Question " + i, answers[i % answers.length]);
+		}
+		return claim;
+	}
+}
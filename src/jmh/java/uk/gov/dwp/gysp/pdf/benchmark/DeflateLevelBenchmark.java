@@ -0,0 +1,75 @@
+package uk.gov.dwp.gysp.pdf.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.processor.PdfDeflateLevel;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to generate a claim's PDF at each deflate level, with the size of the PDF reported alongside as
+ * {@code pdfBytes}, to weigh CPU against bytes stored and sent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeflateLevelBenchmark {
+
+	@Benchmark
+	public byte[] generatePdfStream(final Claim claim, final PdfSize size) throws PdfGeneratorException {
+		final byte[] pdf = claim.processor.generatePdfStream(claim.json);
+		size.pdfBytes = pdf.length;
+		return pdf;
+	}
+
+	@State(Scope.Benchmark)
+	public static class Claim {
+
+		@Param({ "1", "6", "9" })
+		public int deflateLevel;
+
+		@Param({ ClaimPayloads.FLAT, ClaimPayloads.LARGE, ClaimPayloads.TEXT })
+		public String payload;
+
+		private JsonNode json;
+		private PdfGeneratorProcessor processor;
+
+		@Setup
+		public void setUp() {
+			PdfDeflateLevel.apply(this.deflateLevel);
+			this.json = ClaimPayloads.create(this.payload);
+			this.processor = new PdfGeneratorProcessor();
+		}
+	}
+
+	/**
+	 * Reported as the size of the last PDF generated; every PDF of a trial is the same size.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class PdfSize {
+
+		public long pdfBytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.pdfBytes = 0;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package uk.gov.dwp.gysp.pdf.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import uk.gov.dwp.gysp.pdf.InvalidLayoutException;
+import uk.gov.dwp.gysp.pdf.JsonNodeFormReader;
+import uk.gov.dwp.gysp.pdf.PdfFontCache;
+import uk.gov.dwp.gysp.pdf.PdfLayout;
+import uk.gov.dwp.gysp.pdf.PdfLayoutSettings;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to lay out each claim with the default settings and with tighter ones, with the page count reported alongside
+ * as {@code pages}, to show how many pages, and so how much printing and postage, the tighter settings save.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutSettingsBenchmark {
+
+	static final String COMPACT = "compact";
+	static final String DEFAULT = "default";
+	static final String TIGHT = "tight";
+
+	@Benchmark
+	public PdfLayout layout(final Claim claim, final PageCount count) throws IOException {
+		final PdfLayout layout = PdfLayout.compile(new JsonNodeFormReader(claim.json), PdfTemplate.getDefault(),
+				PdfFontCache.getDefault(), claim.settings);
+		count.pages = layout.getPageCount();
+		return layout;
+	}
+
+	@State(Scope.Benchmark)
+	public static class Claim {
+
+		@Param({ ClaimPayloads.FLAT, ClaimPayloads.NESTED, ClaimPayloads.ARRAYS, ClaimPayloads.LARGE,
+				ClaimPayloads.TEXT })
+		public String payload;
+
+		@Param({ DEFAULT, COMPACT, TIGHT })
+		public String layout;
+
+		private JsonNode json;
+		private PdfLayoutSettings settings;
+
+		/**
+		 * Compact keeps the font size and margins and closes up the line spacing; tight also narrows the margins.
+		 */
+		private static PdfLayoutSettings settings(final String layout) throws InvalidLayoutException {
+			final Map<String, String> overrides = new HashMap<>();
+			switch (layout) {
+			case DEFAULT:
+				break;
+			case COMPACT:
+				overrides.put(PdfLayoutSettings.LEADING, "13");
+				overrides.put(PdfLayoutSettings.ANSWER_SPACING, "7");
+				break;
+			case TIGHT:
+				overrides.put(PdfLayoutSettings.LEADING, "12");
+				overrides.put(PdfLayoutSettings.ANSWER_SPACING, "4");
+				overrides.put(PdfLayoutSettings.MARGIN, "48");
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown layout " + layout);
+			}
+			return PdfLayoutSettings.getDefault().with(overrides);
+		}
+
+		@Setup
+		public void setUp() throws InvalidLayoutException {
+			this.json = ClaimPayloads.create(this.payload);
+			this.settings = settings(this.layout);
+		}
+	}
+
+	/**
+	 * Reported as the page count of the last layout; every layout of a trial has the same page count.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class PageCount {
+
+		public long pages;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			this.pages = 0;
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package uk.gov.dwp.gysp.pdf.benchmark;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.gov.dwp.gysp.pdf.PdfFontCache;
+import uk.gov.dwp.gysp.pdf.PdfGenerator;
+import uk.gov.dwp.gysp.pdf.PdfLayout;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to render a claim of {@code pages} pages from its layout, on the calling thread when {@code threads} is 0 or
+ * with its pages written concurrently on a fork join pool of that many threads. The speedup is bounded by the cores
+ * available and by the template copy and font load, which stay on one thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelRenderBenchmark {
+
+	@Benchmark
+	public void render(final Claim claim, final Blackhole blackhole) throws IOException {
+		try (PDDocument document = claim.generator.render(claim.layout, claim.pool)) {
+			blackhole.consume(document.getNumberOfPages());
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Claim {
+
+		@Param({ "8", "32", "128" })
+		public int pages;
+
+		@Param({ "0", "2", "4" })
+		public int threads;
+
+		private PdfGenerator generator;
+		private PdfLayout layout;
+		private ForkJoinPool pool;
+
+		@Setup
+		public void setUp() throws IOException {
+			final ObjectNode json = JsonNodeFactory.instance.objectNode();
+			do {
+				for (int i = 0; i < 10; i++) {
+					json.put("Question " + json.size(), "Answer to question " + json.size() + " of the claim");
+				}
+				this.generator = new PdfGenerator(json, PdfTemplate.getDefault(), PdfFontCache.getDefault());
+				this.layout = this.generator.layout();
+			} while (this.layout.getPageCount() < this.pages);
+			this.pool = this.threads > 0 ? new ForkJoinPool(this.threads) : null;
+		}
+
+		@TearDown
+		public void tearDown() {
+			if (this.pool != null) {
+				this.pool.shutdown();
+			}
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package uk.gov.dwp.gysp.pdf.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import uk.gov.dwp.gysp.pdf.PdfFontCache;
+import uk.gov.dwp.gysp.pdf.PdfGenerator;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.PdfLayout;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each phase of generating a claim PDF, and the whole of it through {@link PdfGeneratorProcessor}:
+ * <ul>
+ * <li>{@code templateParse} and {@code fontParse}: parsing the template and fonts, which only happens once per
+ * process</li>
+ * <li>{@code templateCopy}: copying the cached template into a new document</li>
+ * <li>{@code fontLoad}: {@code PDType0Font.load} of both cached fonts into a document</li>
+ * <li>{@code layout}: {@link PdfGenerator#layout()}, wrapping and placing the text without creating a document</li>
+ * <li>{@code render}: {@link PdfGenerator#render(PdfLayout)} of a compiled layout, that is the template copy, font load
+ * and content streams</li>
+ * <li>{@code generate}: {@link PdfGenerator#generate()}, both of the above</li>
+ * <li>{@code save}: {@code PDDocument.save} of a generated document, including font subsetting</li>
+ * <li>{@code generatePdfStream}: everything, from {@code JsonNode} to PDF bytes</li>
+ * </ul>
+ * Run with {@code mvn -P benchmark test}; the gc profiler is on by default to report allocation per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PdfGeneratorBenchmark {
+
+	private static final String BOLD_FONT = "/org/apache/pdfbox/resources/ttf/Roboto-Bold.ttf";
+	private static final String REGULAR_FONT = "/org/apache/pdfbox/resources/ttf/Roboto-Regular.ttf";
+	private static final String TEMPLATE = "/Claim.pdf";
+
+	private static byte[] readResource(final String name) throws IOException {
+		try (InputStream input = PdfGeneratorBenchmark.class.getResourceAsStream(name)) {
+			return IOUtils.toByteArray(input);
+		}
+	}
+
+	@Benchmark
+	public PdfFontCache fontParse(final Resources resources) throws IOException {
+		return PdfFontCache.load(new ByteArrayInputStream(resources.regularFont),
+				new ByteArrayInputStream(resources.boldFont));
+	}
+
+	@Benchmark
+	public void fontLoad(final Blackhole blackhole) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			blackhole.consume(PdfFontCache.getDefault().loadBoldFont(document));
+			blackhole.consume(PdfFontCache.getDefault().loadRegularFont(document));
+		}
+	}
+
+	@Benchmark
+	public void generate(final Claim claim, final Blackhole blackhole) throws IOException {
+		try (PDDocument document = new PdfGenerator(claim.json, PdfTemplate.getDefault(), PdfFontCache.getDefault())
+				.generate()) {
+			blackhole.consume(document.getNumberOfPages());
+		}
+	}
+
+	@Benchmark
+	public byte[] generatePdfStream(final Claim claim) throws PdfGeneratorException {
+		return claim.processor.generatePdfStream(claim.json);
+	}
+
+	@Benchmark
+	public long save(final GeneratedClaim claim) throws IOException {
+		final CountingOutputStream output = new CountingOutputStream();
+		claim.document.save(output);
+		return output.count;
+	}
+
+	@Benchmark
+	public PdfLayout layout(final Claim claim) throws IOException {
+		return new PdfGenerator(claim.json, PdfTemplate.getDefault(), PdfFontCache.getDefault()).layout();
+	}
+
+	@Benchmark
+	public void render(final Claim claim, final Blackhole blackhole) throws IOException {
+		try (PDDocument document = claim.generator.render(claim.layout)) {
+			blackhole.consume(document.getNumberOfPages());
+		}
+	}
+
+	@Benchmark
+	public void templateCopy(final Blackhole blackhole) throws IOException {
+		try (PDDocument document = PdfTemplate.getDefault().newDocument()) {
+			blackhole.consume(document.getNumberOfPages());
+		}
+	}
+
+	@Benchmark
+	public PdfTemplate templateParse(final Resources resources) throws IOException {
+		return PdfTemplate.load(new ByteArrayInputStream(resources.template));
+	}
+
+	@State(Scope.Benchmark)
+	public static class Claim {
+
+		@Param({ ClaimPayloads.FLAT, ClaimPayloads.NESTED, ClaimPayloads.ARRAYS, ClaimPayloads.UNICODE,
+				ClaimPayloads.LARGE, ClaimPayloads.TEXT })
+		public String payload;
+
+		private PdfGenerator generator;
+		private JsonNode json;
+		private PdfLayout layout;
+		private PdfGeneratorProcessor processor;
+
+		@Setup
+		public void setUp() throws IOException {
+			this.json = ClaimPayloads.create(this.payload);
+			this.processor = new PdfGeneratorProcessor();
+			this.generator = new PdfGenerator(this.json, PdfTemplate.getDefault(), PdfFontCache.getDefault());
+			this.layout = this.generator.layout();
+		}
+	}
+
+	/**
+	 * A freshly generated document for each call to {@link #save(GeneratedClaim)}, as a document's fonts are subset
+	 * when it is first saved.
+	 */
+	@State(Scope.Thread)
+	public static class GeneratedClaim {
+
+		@Param({ ClaimPayloads.FLAT, ClaimPayloads.NESTED, ClaimPayloads.ARRAYS, ClaimPayloads.UNICODE,
+				ClaimPayloads.LARGE, ClaimPayloads.TEXT })
+		public String payload;
+
+		private PDDocument document;
+		private JsonNode json;
+
+		@Setup(Level.Trial)
+		public void setUpClaim() {
+			this.json = ClaimPayloads.create(this.payload);
+		}
+
+		@Setup(Level.Invocation)
+		public void setUpDocument() throws IOException {
+			this.document = new PdfGenerator(this.json, PdfTemplate.getDefault(), PdfFontCache.getDefault())
+					.generate();
+		}
+
+		@TearDown(Level.Invocation)
+		public void tearDownDocument() throws IOException {
+			this.document.close();
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Resources {
+
+		private byte[] boldFont;
+		private byte[] regularFont;
+		private byte[] template;
+
+		@Setup
+		public void setUp() throws IOException {
+			this.template = readResource(TEMPLATE);
+			this.regularFont = readResource(REGULAR_FONT);
+			this.boldFont = readResource(BOLD_FONT);
+		}
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(final int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			this.count += len;
+		}
+	}
+}
@@ -4,6 +4,8 @@ import com.fasterxml.classmate.TypeResolver;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.event.ApplicationPreparedEvent;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
@@ -20,6 +22,7 @@ import springfox.documentation.spi.DocumentationType;
 import springfox.documentation.spring.web.plugins.Docket;
 import springfox.documentation.swagger.web.UiConfiguration;
 import springfox.documentation.swagger2.annotations.EnableSwagger2;
+import uk.gov.dwp.gysp.pdf.processor.PdfDeflateLevel;
 
 import java.time.LocalDate;
 
@@ -35,7 +38,10 @@ public class Application {
     private TypeResolver typeResolver;
 
     public static void main(String[] args) {
-        SpringApplication.run(Application.class, args);
+        final SpringApplication application = new SpringApplication(Application.class);
+        application.addListeners((ApplicationListener<ApplicationPreparedEvent>) event -> PdfDeflateLevel.apply(event
+                .getApplicationContext().getEnvironment().getProperty(PdfDeflateLevel.PROPERTY, Integer.class, -1)));
+        application.run(args);
     }
 
     @Bean
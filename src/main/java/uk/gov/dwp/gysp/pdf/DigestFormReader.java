@@ -0,0 +1,90 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Passes a claim's questions and answers on from another reader, counting them and taking a SHA-256 digest of them in
+ * order. The digest depends only on what is written to the PDF, so the same claim gives the same digest however its
+ * json was formatted or read. Where a group of answers starts and ends is part of the digest when the layout indents
+ * nested answers, since two claims differing only in their nesting then look different.
+ */
+public class DigestFormReader implements FormReader {
+
+	private static final byte ANSWER = 'A';
+	private static final byte END_GROUP = '}';
+	private static final byte QUESTION = 'Q';
+	private static final byte SEPARATOR = 0;
+	private static final byte START_GROUP = '{';
+
+	private final MessageDigest digest;
+	private int fields;
+	private final boolean groups;
+	private final FormReader reader;
+
+	public DigestFormReader(final FormReader reader, final PdfLayoutSettings settings) {
+		this.reader = reader;
+		this.groups = settings.getIndent() > 0;
+		try {
+			this.digest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	/**
+	 * The digest of everything read so far. Only call once the claim has been read, as it resets the digest.
+	 */
+	public byte[] getDigest() {
+		return this.digest.digest();
+	}
+
+	public int getFieldCount() {
+		return this.fields;
+	}
+
+	@Override
+	public void read(final FormContentHandler handler) throws IOException {
+		this.reader.read(new FormContentHandler() {
+
+			@Override
+			public void addFormAnswer(final String answer) throws IOException {
+				update(ANSWER, answer);
+				handler.addFormAnswer(answer);
+			}
+
+			@Override
+			public void addFormQuestion(final String question) throws IOException {
+				update(QUESTION, question);
+				handler.addFormQuestion(question);
+			}
+
+			@Override
+			public void endGroup() throws IOException {
+				group(END_GROUP);
+				handler.endGroup();
+			}
+
+			@Override
+			public void startGroup() throws IOException {
+				group(START_GROUP);
+				handler.startGroup();
+			}
+		});
+	}
+
+	private void group(final byte marker) {
+		if (this.groups) {
+			this.digest.update(marker);
+		}
+	}
+
+	private void update(final byte type, final String text) {
+		this.fields++;
+		this.digest.update(type);
+		this.digest.update(text.getBytes(StandardCharsets.UTF_8));
+		this.digest.update(SEPARATOR);
+	}
+}
@@ -0,0 +1,25 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.io.IOException;
+
+/**
+ * Receives the questions and answers of a claim form in document order.
+ */
+public interface FormContentHandler {
+
+	void addFormAnswer(String answer) throws IOException;
+
+	void addFormQuestion(String question) throws IOException;
+
+	/**
+	 * Marks the end of the answers started by the last unmatched {@link #startGroup()}.
+	 */
+	default void endGroup() throws IOException {
+	}
+
+	/**
+	 * Marks the start of answers nested a level deeper, those of an object or list answering the last question.
+	 */
+	default void startGroup() throws IOException {
+	}
+}
@@ -0,0 +1,11 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.io.IOException;
+
+/**
+ * Reads a claim form from some source and passes its questions and answers to a {@link FormContentHandler}.
+ */
+public interface FormReader {
+
+	void read(FormContentHandler handler) throws IOException;
+}
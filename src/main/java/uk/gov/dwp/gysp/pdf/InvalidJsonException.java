@@ -0,0 +1,10 @@
+package uk.gov.dwp.gysp.pdf;
+
+public class InvalidJsonException extends PdfGeneratorException {
+
+	private static final long serialVersionUID = 6172504417935281340L;
+
+	public InvalidJsonException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
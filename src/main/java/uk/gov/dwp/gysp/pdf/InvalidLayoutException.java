@@ -0,0 +1,10 @@
+package uk.gov.dwp.gysp.pdf;
+
+public class InvalidLayoutException extends PdfGeneratorException {
+
+	private static final long serialVersionUID = 8412703596361480227L;
+
+	public InvalidLayoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
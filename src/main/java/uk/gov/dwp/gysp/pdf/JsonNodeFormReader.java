@@ -0,0 +1,129 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map.Entry;
+
+/**
+ * Reads a claim form from a parsed JSON document. The document is walked with an explicit stack rather than by
+ * recursion, so however deeply a claim is nested it cannot overflow the thread's stack, and a node that cannot be
+ * written is reported by its JSON pointer rather than by logging the whole document.
+ */
+public class JsonNodeFormReader implements FormReader {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(JsonNodeFormReader.class);
+	// enough to locate a node without a deeply nested or long named claim flooding the log
+	private static final int MAX_POINTER_LENGTH = 256;
+
+	private final JsonNode json;
+
+	public JsonNodeFormReader(final JsonNode json) {
+		this.json = json;
+	}
+
+	/**
+	 * The JSON pointer of the node being read, keeping only its last {@value #MAX_POINTER_LENGTH} characters.
+	 */
+	private static String pointer(final Deque<Container> stack) {
+		final StringBuilder pointer = new StringBuilder();
+		final Iterator<Container> containers = stack.descendingIterator();
+		while (containers.hasNext()) {
+			final Container container = containers.next();
+			pointer.append('/');
+			if (container.fields != null) {
+				pointer.append(container.name.replace("~", "~0").replace("/", "~1"));
+			} else {
+				pointer.append(container.index - 1);
+			}
+		}
+		if (pointer.length() > MAX_POINTER_LENGTH) {
+			return "..." + pointer.substring(pointer.length() - MAX_POINTER_LENGTH);
+		}
+		return pointer.toString();
+	}
+
+	private static void pop(final Deque<Container> stack, final FormContentHandler handler) throws IOException {
+		stack.pop();
+		// the root object is not a group
+		if (!stack.isEmpty()) {
+			handler.endGroup();
+		}
+	}
+
+	private static IllegalArgumentException unsupported(final Deque<Container> stack, final JsonNode node,
+			final String message) {
+		LOGGER.error("Bad node type {} found at {}", node.getNodeType(), pointer(stack));
+		return new IllegalArgumentException(message);
+	}
+
+	@Override
+	public void read(final FormContentHandler handler) throws IOException {
+		if (!this.json.isObject()) {
+			return;
+		}
+		final Deque<Container> stack = new ArrayDeque<>();
+		stack.push(new Container(this.json));
+		while (!stack.isEmpty()) {
+			final Container container = stack.peek();
+			if (container.fields != null) {
+				if (!container.fields.hasNext()) {
+					pop(stack, handler);
+					continue;
+				}
+				final Entry<String, JsonNode> entry = container.fields.next();
+				container.name = entry.getKey();
+				handler.addFormQuestion(entry.getKey());
+
+				final JsonNode valueNode = entry.getValue();
+				if (valueNode.isTextual()) {
+					handler.addFormAnswer(valueNode.textValue());
+				} else if (valueNode.isContainerNode()) {
+					stack.push(new Container(valueNode));
+					handler.startGroup();
+				} else {
+					throw unsupported(stack, valueNode, String.format(
+							"Node type: %s for node %s is not currently supported when processing JSON objects",
+							valueNode.getNodeType().name(), entry.getKey()));
+				}
+			} else {
+				if (container.index == container.node.size()) {
+					pop(stack, handler);
+					continue;
+				}
+				final JsonNode element = container.node.get(container.index++);
+				if (element.isTextual()) {
+					handler.addFormAnswer(element.textValue());
+				} else if (element.isObject()) {
+					stack.push(new Container(element));
+					handler.startGroup();
+				} else {
+					throw unsupported(stack, element,
+							String.format("Node type: '%s' is not currently supported when processing JSON Arrays",
+									element.getNodeType().name()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * An object or array being read, with the field or element reached so far.
+	 */
+	private static final class Container {
+
+		private final Iterator<Entry<String, JsonNode>> fields;
+		private int index;
+		private String name;
+		private final JsonNode node;
+
+		private Container(final JsonNode node) {
+			this.node = node;
+			this.fields = node.isObject() ? node.fields() : null;
+		}
+	}
+}
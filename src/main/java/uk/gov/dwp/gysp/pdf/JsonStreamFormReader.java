@@ -0,0 +1,95 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.node.JsonNodeType;
+
+import java.io.IOException;
+
+/**
+ * Reads a claim form token by token, so the questions and answers are written as they are parsed and the JSON
+ * document is never held in memory as a whole. Produces the same questions and answers, in the same order, as
+ * {@link JsonNodeFormReader} does for the parsed document.
+ */
+public class JsonStreamFormReader implements FormReader {
+
+	private final JsonParser parser;
+
+	public JsonStreamFormReader(final JsonParser parser) {
+		this.parser = parser;
+	}
+
+	private static String getNodeType(final JsonToken token) {
+		switch (token) {
+		case START_ARRAY:
+			return JsonNodeType.ARRAY.name();
+		case VALUE_TRUE:
+		case VALUE_FALSE:
+			return JsonNodeType.BOOLEAN.name();
+		case VALUE_NULL:
+			return JsonNodeType.NULL.name();
+		case VALUE_NUMBER_INT:
+		case VALUE_NUMBER_FLOAT:
+			return JsonNodeType.NUMBER.name();
+		default:
+			return JsonNodeType.POJO.name();
+		}
+	}
+
+	private static IllegalArgumentException unsupported(final JsonStreamContext container, final JsonToken token) {
+		if (container.inArray()) {
+			return new IllegalArgumentException(String.format(
+					"Node type: '%s' is not currently supported when processing JSON Arrays", getNodeType(token)));
+		}
+		return new IllegalArgumentException(
+				String.format("Node type: %s for node %s is not currently supported when processing JSON objects",
+						getNodeType(token), container.getCurrentName()));
+	}
+
+	/**
+	 * Reads the root object without recursing, the parser's own context tracking the objects and arrays it is in.
+	 */
+	@Override
+	public void read(final FormContentHandler handler) throws IOException {
+		JsonToken token = this.parser.nextToken();
+		if (token == null) {
+			throw new JsonParseException(this.parser, "No json content found");
+		}
+		if (token != JsonToken.START_OBJECT) {
+			this.parser.skipChildren();
+			return;
+		}
+		while ((token = this.parser.nextToken()) != null) {
+			switch (token) {
+			case FIELD_NAME:
+				handler.addFormQuestion(this.parser.getCurrentName());
+				break;
+			case VALUE_STRING:
+				handler.addFormAnswer(this.parser.getText());
+				break;
+			case START_OBJECT:
+				handler.startGroup();
+				break;
+			case START_ARRAY:
+				// only an object may hold an array
+				final JsonStreamContext container = this.parser.getParsingContext().getParent();
+				if (container.inArray()) {
+					throw unsupported(container, token);
+				}
+				handler.startGroup();
+				break;
+			case END_OBJECT:
+			case END_ARRAY:
+				if (this.parser.getParsingContext().inRoot()) {
+					return;
+				}
+				handler.endGroup();
+				break;
+			default:
+				throw unsupported(this.parser.getParsingContext(), token);
+			}
+		}
+	}
+}
@@ -0,0 +1,10 @@
+package uk.gov.dwp.gysp.pdf;
+
+public class JsonTooLargeException extends InvalidJsonException {
+
+	private static final long serialVersionUID = -2260153318526342176L;
+
+	public JsonTooLargeException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
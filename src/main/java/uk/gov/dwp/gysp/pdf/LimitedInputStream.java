@@ -0,0 +1,77 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fails a read once more than the limit has been read, so an oversized claim is refused without reading all of it.
+ * When several claims are read from one stream the count can be restarted between them, so the limit applies to each
+ * claim rather than to the whole stream; a parser reading ahead counts what it has buffered of the next claim against
+ * the one before, so each claim is limited to within the parser's buffer.
+ */
+public final class LimitedInputStream extends FilterInputStream {
+
+	private final long limit;
+	private long remaining;
+
+	public LimitedInputStream(final InputStream input, final long limit) {
+		super(input);
+		this.limit = limit;
+		this.remaining = limit;
+	}
+
+	/**
+	 * Restarts the count, and so the limit, if the stream is limited; used between the claims read from one stream.
+	 */
+	public static void restart(final InputStream input) {
+		if (input instanceof LimitedInputStream) {
+			((LimitedInputStream) input).remaining = ((LimitedInputStream) input).limit;
+		}
+	}
+
+	/**
+	 * The number of bytes read so far, or since the count was last restarted.
+	 */
+	public long getCount() {
+		return this.limit - this.remaining;
+	}
+
+	@Override
+	public int read() throws IOException {
+		final int b = super.read();
+		if (b >= 0) {
+			count(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(final byte[] b, final int off, final int len) throws IOException {
+		final int read = super.read(b, off, len);
+		if (read > 0) {
+			count(read);
+		}
+		return read;
+	}
+
+	private void count(final int read) throws LimitExceededException {
+		this.remaining -= read;
+		if (this.remaining < 0) {
+			throw new LimitExceededException(this.limit);
+		}
+	}
+
+	/**
+	 * Thrown by a read once the limit has been passed. It is an {@link IOException}, so that it passes through the
+	 * json parser reading the stream unchanged.
+	 */
+	public static final class LimitExceededException extends IOException {
+
+		private static final long serialVersionUID = 5934761873453390544L;
+
+		private LimitExceededException(final long limit) {
+			super("Json larger than " + limit + " bytes");
+		}
+	}
+}
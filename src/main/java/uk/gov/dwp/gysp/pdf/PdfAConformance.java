@@ -0,0 +1,161 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.common.PDMetadata;
+import org.apache.pdfbox.pdmodel.graphics.color.PDOutputIntent;
+import org.apache.pdfbox.util.DateConverter;
+
+import java.awt.color.ColorSpace;
+import java.awt.color.ICC_Profile;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Makes a generated document conform to PDF/A-1b for archiving. Claims are written only in embedded font subsets, so
+ * all a document needs is an sRGB output intent, added if its template has none, and XMP metadata that declares
+ * PDF/A-1b and repeats its document information, which replaces any the template had. The colour profile is
+ * compressed and the fixed parts of the metadata laid out once, so each document only copies the profile and fills in
+ * its own values.
+ */
+public final class PdfAConformance {
+
+	private static final String SRGB = "sRGB IEC61966-2.1";
+
+	private PdfAConformance() {
+	}
+
+	public static void apply(final PDDocument document) throws IOException {
+		final PDDocumentCatalog catalog = document.getDocumentCatalog();
+		if (!hasPdfAOutputIntent(catalog)) {
+			catalog.addOutputIntent(srgbOutputIntent(document));
+		}
+		// written unfiltered, as PDF/A-1 requires of metadata
+		final PDMetadata metadata = new PDMetadata(document);
+		metadata.importXMPMetadata(xmp(document.getDocumentInformation()));
+		catalog.setMetadata(metadata);
+	}
+
+	private static void appendAlt(final StringBuilder xmp, final String name, final String value) {
+		if (value != null) {
+			xmp.append("<").append(name).append("><rdf:Alt><rdf:li xml:lang=\"x-default\">");
+			appendEscaped(xmp, value);
+			xmp.append("</rdf:li></rdf:Alt></").append(name).append(">\n");
+		}
+	}
+
+	private static void appendEscaped(final StringBuilder xmp, final String value) {
+		for (int index = 0; index < value.length(); index++) {
+			final char c = value.charAt(index);
+			switch (c) {
+			case '&':
+				xmp.append("&amp;");
+				break;
+			case '<':
+				xmp.append("&lt;");
+				break;
+			case '>':
+				xmp.append("&gt;");
+				break;
+			default:
+				xmp.append(c);
+			}
+		}
+	}
+
+	private static void appendProperty(final StringBuilder xmp, final String name, final Calendar value) {
+		if (value != null) {
+			appendProperty(xmp, name, DateConverter.toISO8601(value));
+		}
+	}
+
+	private static void appendProperty(final StringBuilder xmp, final String name, final String value) {
+		if (value != null) {
+			xmp.append("<").append(name).append(">");
+			appendEscaped(xmp, value);
+			xmp.append("</").append(name).append(">\n");
+		}
+	}
+
+	private static boolean hasPdfAOutputIntent(final PDDocumentCatalog catalog) {
+		for (final PDOutputIntent intent : catalog.getOutputIntents()) {
+			if (COSName.GTS_PDFA1.equals(((COSDictionary) intent.getCOSObject()).getCOSName(COSName.S))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static PDOutputIntent srgbOutputIntent(final PDDocument document) throws IOException {
+		final COSStream profile = document.getDocument().createCOSStream();
+		profile.setItem(COSName.FILTER, COSName.FLATE_DECODE);
+		profile.setInt(COSName.N, 3);
+		try (OutputStream output = profile.createRawOutputStream()) {
+			output.write(SrgbProfileHolder.DEFLATED);
+		}
+		final COSDictionary dictionary = new COSDictionary();
+		dictionary.setItem(COSName.TYPE, COSName.OUTPUT_INTENT);
+		dictionary.setItem(COSName.S, COSName.GTS_PDFA1);
+		dictionary.setItem(COSName.DEST_OUTPUT_PROFILE, profile);
+		final PDOutputIntent intent = new PDOutputIntent(dictionary);
+		intent.setOutputConditionIdentifier(SRGB);
+		intent.setInfo(SRGB);
+		intent.setRegistryName("http://www.color.org");
+		return intent;
+	}
+
+	private static byte[] xmp(final PDDocumentInformation information) {
+		final StringBuilder xmp = new StringBuilder(Xmp.HEADER);
+		appendAlt(xmp, "dc:title", information.getTitle());
+		if (information.getAuthor() != null) {
+			xmp.append("<dc:creator><rdf:Seq><rdf:li>");
+			appendEscaped(xmp, information.getAuthor());
+			xmp.append("</rdf:li></rdf:Seq></dc:creator>\n");
+		}
+		appendAlt(xmp, "dc:description", information.getSubject());
+		appendProperty(xmp, "pdf:Keywords", information.getKeywords());
+		appendProperty(xmp, "pdf:Producer", information.getProducer());
+		appendProperty(xmp, "xmp:CreatorTool", information.getCreator());
+		appendProperty(xmp, "xmp:CreateDate", information.getCreationDate());
+		appendProperty(xmp, "xmp:ModifyDate", information.getModificationDate());
+		xmp.append(Xmp.FOOTER);
+		return xmp.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static final class SrgbProfileHolder {
+
+		private static final byte[] DEFLATED = deflate(ICC_Profile.getInstance(ColorSpace.CS_sRGB).getData());
+
+		private static byte[] deflate(final byte[] data) {
+			final ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+			try (OutputStream output = new DeflaterOutputStream(deflated)) {
+				output.write(data);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			return deflated.toByteArray();
+		}
+	}
+
+	private static final class Xmp {
+
+		private static final String FOOTER = "</rdf:Description>\n</rdf:RDF>\n</x:xmpmeta>\n<?xpacket end=\"w\"?>";
+		private static final String HEADER = "<?xpacket begin=\"\uFEFF\" id=\"W5M0MpCehiHzreSzNTczkc9d\"?>\n"
+				+ "<x:xmpmeta xmlns:x=\"adobe:ns:meta/\">\n"
+				+ "<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\">\n"
+				+ "<rdf:Description rdf:about=\"\" xmlns:pdfaid=\"http://www.aiim.org/pdfa/ns/id/\""
+				+ " xmlns:dc=\"http://purl.org/dc/elements/1.1/\" xmlns:pdf=\"http://ns.adobe.com/pdf/1.3/\""
+				+ " xmlns:xmp=\"http://ns.adobe.com/xap/1.0/\">\n"
+				+ "<pdfaid:part>1</pdfaid:part>\n"
+				+ "<pdfaid:conformance>B</pdfaid:conformance>\n";
+	}
+}
@@ -0,0 +1,94 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PageMode;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDDocumentOutline;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Many claims rendered one after another into a single document, for printing in one run. Every claim is laid out as
+ * it would be on its own and starts on a new page, with a bookmark to its first page. The template is copied and the
+ * fonts embedded once for the whole document, so each font is subset to the glyphs used by all of the claims. Page
+ * content is written to the document's scratch file as each claim is added, so with a {@link MemoryUsageSetting} that
+ * allows a temporary file only the page objects, not their content, are held in memory until it is saved.
+ */
+public final class PdfBundle implements Closeable {
+
+	private final PDFont boldFont;
+	private int claimCount;
+	private final PDDocument document;
+	private final PDFont font;
+	private final PDDocumentOutline outline = new PDDocumentOutline();
+	private final PdfTemplate template;
+
+	public PdfBundle(final PdfTemplate template, final PdfFontCache fonts, final MemoryUsageSetting memoryUsageSetting)
+			throws IOException {
+		this.template = template;
+		try (PdfSpan span = PdfSpan.start(PdfSpan.TEMPLATE)) {
+			this.document = template.newDocument(memoryUsageSetting);
+		}
+		try (PdfSpan span = PdfSpan.start(PdfSpan.FONTS)) {
+			this.boldFont = fonts.loadBoldFont(this.document);
+			this.font = fonts.loadRegularFont(this.document);
+		} catch (final IOException e) {
+			this.document.close();
+			throw e;
+		}
+		this.document.getDocumentCatalog().setDocumentOutline(this.outline);
+		this.document.getDocumentCatalog().setPageMode(PageMode.USE_OUTLINES);
+	}
+
+	/**
+	 * Adds the pages of a layout, compiled for this bundle's template and fonts, after those already added, with a
+	 * bookmark of the given title.
+	 */
+	public void add(final String title, final PdfLayout layout) throws IOException {
+		// the first claim starts on the template's page
+		final int firstPage = this.claimCount == 0 ? 0 : this.document.getNumberOfPages();
+		for (int page = 0; page < layout.getPageCount(); page++) {
+			final PDPage pdPage = firstPage + page < this.document.getNumberOfPages()
+					? this.document.getPage(firstPage + page) : allocatePage();
+			PdfGenerator.writePage(new PDPageContentStream(this.document, pdPage), layout, page, this.boldFont,
+					this.font);
+		}
+
+		final PDPageFitDestination destination = new PDPageFitDestination();
+		destination.setPage(this.document.getPage(firstPage));
+		final PDOutlineItem bookmark = new PDOutlineItem();
+		bookmark.setTitle(title);
+		bookmark.setDestination(destination);
+		this.outline.addLast(bookmark);
+		this.claimCount++;
+	}
+
+	@Override
+	public void close() throws IOException {
+		this.document.close();
+	}
+
+	public int getClaimCount() {
+		return this.claimCount;
+	}
+
+	/**
+	 * The document the claims are rendered into, to be saved once they have all been added.
+	 */
+	public PDDocument getDocument() {
+		return this.document;
+	}
+
+	private PDPage allocatePage() {
+		final PDPage page = new PDPage(this.template.getMediaBox());
+		page.setResources(this.document.getPage(0).getResources());
+		this.document.addPage(page);
+		return page;
+	}
+}
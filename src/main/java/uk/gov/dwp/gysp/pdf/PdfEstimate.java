@@ -0,0 +1,92 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * The page count of a claim and the approximate size of its PDF, worked out from its {@link PdfLayout} without
+ * rendering or saving a document.
+ */
+public final class PdfEstimate {
+
+	private final long bytes;
+	private final int pages;
+
+	public PdfEstimate(final int pages, final long bytes) {
+		this.pages = pages;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Estimates the saved size from the pages, how well their text compresses and the glyphs each font subset has to
+	 * embed, with weights fitted to PDFs generated from the default template and fonts at the default compression.
+	 */
+	public static PdfEstimate of(final PdfLayout layout) {
+		final BitSet boldGlyphs = new BitSet();
+		final BitSet regularGlyphs = new BitSet();
+		final CountingOutputStream compressedText = new CountingOutputStream();
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+		try (OutputStream text = new DeflaterOutputStream(compressedText, deflater)) {
+			for (int line = 0; line < layout.getLineCount(); line++) {
+				final String lineText = layout.getLine(line);
+				final BitSet glyphs = layout.isBold(line) ? boldGlyphs : regularGlyphs;
+				for (int index = 0; index < lineText.length();) {
+					final int codePoint = lineText.codePointAt(index);
+					glyphs.set(codePoint);
+					index += Character.charCount(codePoint);
+				}
+				text.write(lineText.getBytes(StandardCharsets.UTF_8));
+				text.write('\n');
+			}
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			deflater.end();
+		}
+		final double bytes = Model.BASE + Model.PER_PAGE * layout.getPageCount()
+				+ Model.PER_COMPRESSED_TEXT_BYTE * compressedText.count
+				+ Model.PER_GLYPH * (boldGlyphs.cardinality() + regularGlyphs.cardinality());
+		return new PdfEstimate(layout.getPageCount(), Math.round(bytes));
+	}
+
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	public int getPages() {
+		return this.pages;
+	}
+
+	/**
+	 * Weights in bytes, from a least squares fit over several hundred generated claims of 1 to 53 pages of both prose
+	 * and random text, which estimates half within 2% and nine in ten within 4%. The base is the template and the fixed
+	 * part of the fonts, and each distinct glyph adds its outline, width and unicode mapping to a font subset.
+	 */
+	private static final class Model {
+
+		private static final double BASE = 11837;
+		private static final double PER_COMPRESSED_TEXT_BYTE = 1.48;
+		private static final double PER_GLYPH = 113.8;
+		private static final double PER_PAGE = 396.8;
+	}
+
+	private static final class CountingOutputStream extends OutputStream {
+
+		private long count;
+
+		@Override
+		public void write(final int b) {
+			this.count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			this.count += len;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * The TrueType fonts used to write claims, parsed once and shared by every document along with their glyph widths.
+ * Each document embeds only the subset of glyphs it uses.
+ */
+public final class PdfFontCache {
+
+	private static final String BOLD_FONT = "/org/apache/pdfbox/resources/ttf/Roboto-Bold.ttf";
+	private static final String REGULAR_FONT = "/org/apache/pdfbox/resources/ttf/Roboto-Regular.ttf";
+
+	private final TrueTypeFont boldFont;
+	private final PdfFontMetrics boldMetrics;
+	private final TrueTypeFont regularFont;
+	private final PdfFontMetrics regularMetrics;
+
+	private PdfFontCache(final TrueTypeFont regularFont, final TrueTypeFont boldFont) throws IOException {
+		this.regularFont = regularFont;
+		this.regularMetrics = PdfFontMetrics.load(regularFont);
+		this.boldFont = boldFont;
+		this.boldMetrics = PdfFontMetrics.load(boldFont);
+	}
+
+	public static PdfFontCache getDefault() {
+		return DefaultFontsHolder.INSTANCE;
+	}
+
+	public static PdfFontCache load(final InputStream regularFont, final InputStream boldFont) throws IOException {
+		return new PdfFontCache(new TTFParser().parse(regularFont), new TTFParser().parse(boldFont));
+	}
+
+	public TrueTypeFont getBoldFont() {
+		return this.boldFont;
+	}
+
+	public PdfFontMetrics getBoldMetrics() {
+		return this.boldMetrics;
+	}
+
+	public TrueTypeFont getRegularFont() {
+		return this.regularFont;
+	}
+
+	public PdfFontMetrics getRegularMetrics() {
+		return this.regularMetrics;
+	}
+
+	/**
+	 * Loads the bold font into the document, to be subset to the glyphs used when the document is saved.
+	 */
+	public PDFont loadBoldFont(final PDDocument document) throws IOException {
+		return PDType0Font.load(document, this.boldFont, true);
+	}
+
+	/**
+	 * Loads the regular font into the document, to be subset to the glyphs used when the document is saved.
+	 */
+	public PDFont loadRegularFont(final PDDocument document) throws IOException {
+		return PDType0Font.load(document, this.regularFont, true);
+	}
+
+	private static final class DefaultFontsHolder {
+
+		private static final PdfFontCache INSTANCE = loadDefault();
+
+		private static PdfFontCache loadDefault() {
+			try (InputStream regular = PdfFontCache.class.getResourceAsStream(REGULAR_FONT);
+					InputStream bold = PdfFontCache.class.getResourceAsStream(BOLD_FONT)) {
+				return load(regular, bold);
+			} catch (final IOException e) {
+				throw new UncheckedIOException("Unable to load pdf fonts", e);
+			}
+		}
+	}
+}
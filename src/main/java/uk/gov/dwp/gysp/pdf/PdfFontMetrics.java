@@ -0,0 +1,69 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.fontbox.ttf.CmapLookup;
+import org.apache.fontbox.ttf.HorizontalMetricsTable;
+import org.apache.fontbox.ttf.TrueTypeFont;
+
+import java.io.IOException;
+
+/**
+ * Glyph widths of a TrueType font, read once from its tables and shared by every document. Widths are in thousandths
+ * of the font size, rounded the same way as the widths PDFBox embeds, so text measured here matches
+ * {@code PDFont.getStringWidth} without building a font for each document.
+ */
+public final class PdfFontMetrics {
+
+	private final int[] advanceWidths;
+	private final CmapLookup cmap;
+
+	private PdfFontMetrics(final CmapLookup cmap, final int[] advanceWidths) {
+		this.cmap = cmap;
+		this.advanceWidths = advanceWidths;
+	}
+
+	public static PdfFontMetrics load(final TrueTypeFont font) throws IOException {
+		final HorizontalMetricsTable metrics = font.getHorizontalMetrics();
+		final float scale = 1000f / font.getUnitsPerEm();
+		final int[] advanceWidths = new int[font.getNumberOfGlyphs()];
+		for (int gid = 0; gid < advanceWidths.length; gid++) {
+			advanceWidths[gid] = Math.round(metrics.getAdvanceWidth(gid) * scale);
+		}
+		return new PdfFontMetrics(font.getUnicodeCmapLookup(), advanceWidths);
+	}
+
+	/**
+	 * Width of the text, in thousandths of the font size.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if the font has no glyph for a character of the text, as PDFBox would when showing it
+	 */
+	public float getStringWidth(final String text) {
+		float width = 0;
+		for (int index = 0; index < text.length();) {
+			final int codePoint = text.codePointAt(index);
+			width += getWidth(codePoint);
+			index += Character.charCount(codePoint);
+		}
+		return width;
+	}
+
+	/**
+	 * Width of the text at the font size, in user space units.
+	 */
+	public float getStringWidth(final String text, final float fontSize) {
+		return getStringWidth(text) * fontSize / 1000f;
+	}
+
+	public float getWidth(final int codePoint) {
+		final int gid = this.cmap.getGlyphId(codePoint);
+		if (gid <= 0 || gid >= this.advanceWidths.length) {
+			throw new IllegalArgumentException(String.format("No glyph for U+%04X in font", codePoint));
+		}
+		return this.advanceWidths[gid];
+	}
+
+	public boolean hasGlyph(final int codePoint) {
+		final int gid = this.cmap.getGlyphId(codePoint);
+		return gid > 0 && gid < this.advanceWidths.length;
+	}
+}
@@ -1,182 +1,300 @@
 package uk.gov.dwp.gysp.pdf;
 
-
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.ArrayNode;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
-import org.apache.pdfbox.pdmodel.font.PDType0Font;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.net.URL;
-import java.util.Iterator;
-import java.util.Map.Entry;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class PdfGenerator {
 
-	private static final Logger LOGGER = LoggerFactory.getLogger(PdfGenerator.class);
-
-	private static final int FONT_SIZE = 10;
-	private static final float MARGIN = 72;
-	private static final float Y_DECREMENT = 20;
+	// the code points given to the font subsets are only recorded to check them when assertions are enabled
+	private static final boolean CHECK_SUBSETS = PdfGenerator.class.desiredAssertionStatus();
+	private static final int PAGES_PER_TASK = 4;
 
-	private PDFont boldFont;
-	private PDPageContentStream contentStream;
-	private PDPage currentPage;
-	private PDDocument doc;
-	private PDFont font;
-	private float heightCounter;
-	private final JsonNode json;
-	private float leftMarginOffset;
-	private float pageEndY;
-	private int pageIndex = 0;
+	private final PdfFontCache fonts;
+	private final MemoryUsageSetting memoryUsageSetting;
+	private final FormReader reader;
+	private final PdfLayoutSettings settings;
+	private final PdfTemplate template;
 
 	public PdfGenerator(final JsonNode json) {
-		this.json = json;
+		this(json, PdfTemplate.getDefault(), PdfFontCache.getDefault());
 	}
 
-	public PDDocument generate() throws IOException {
-		initPdfDocument();
-		return populateDocument();
+	public PdfGenerator(final JsonNode json, final PdfTemplate template, final PdfFontCache fonts) {
+		this(new JsonNodeFormReader(json), template, fonts);
 	}
 
-	private static InputStream getArialBoldFontStream() {
-		return PdfGenerator.class.getResourceAsStream("/org/apache/pdfbox/resources/ttf/Roboto-Bold.ttf");
+	public PdfGenerator(final FormReader reader, final PdfTemplate template, final PdfFontCache fonts) {
+		this(reader, template, fonts, MemoryUsageSetting.setupMainMemoryOnly());
 	}
 
-	private static InputStream getArialFontStream() {
-		return PdfGenerator.class.getResourceAsStream("/org/apache/pdfbox/resources/ttf/Roboto-Regular.ttf");
+	public PdfGenerator(final FormReader reader, final PdfTemplate template, final PdfFontCache fonts,
+			final MemoryUsageSetting memoryUsageSetting) {
+		this(reader, template, fonts, memoryUsageSetting, PdfLayoutSettings.getDefault());
 	}
 
-	private void addFormAnswer(final JsonNode valueNode) throws IOException {
-		this.contentStream.beginText();
-		this.contentStream.setFont(this.font, FONT_SIZE);
-		this.contentStream.newLineAtOffset(this.leftMarginOffset, this.heightCounter);
-		this.contentStream.showText(valueNode.textValue());
-		this.contentStream.endText();
-		decrementHeight();
-		decrementHeight();
-
-		if (nextPage()) {
-			initNextPage();
-		}
+	public PdfGenerator(final FormReader reader, final PdfTemplate template, final PdfFontCache fonts,
+			final MemoryUsageSetting memoryUsageSetting, final PdfLayoutSettings settings) {
+		this.reader = reader;
+		this.memoryUsageSetting = memoryUsageSetting;
+		this.template = template;
+		this.fonts = fonts;
+		this.settings = settings;
 	}
 
-	private void addFormQuestion(final Entry<String, JsonNode> entry) throws IOException {
-
-		if (nextPageQ()) {
-			initNextPage();
-		}
-		this.contentStream.beginText();
-		this.contentStream.setFont(this.boldFont, FONT_SIZE);
-		this.contentStream.newLineAtOffset(this.leftMarginOffset, this.heightCounter);
-		this.contentStream.showText(entry.getKey());
-		this.contentStream.endText();
-		decrementHeight();
+	public PDDocument generate() throws IOException {
+		return render(layout());
 	}
 
-	private void decrementHeight() {
-		this.heightCounter -= Y_DECREMENT;
+	/**
+	 * Lays out the form without creating a document.
+	 */
+	public PdfLayout layout() throws IOException {
+		return PdfLayout.compile(this.reader, this.template, this.fonts, this.settings);
 	}
 
-	private void initCurrentPage() {
-		this.currentPage = this.doc.getPage(this.pageIndex++);
-		initPageVars();
+	/**
+	 * Renders a layout, compiled for this generator's template and fonts, into a new document.
+	 */
+	public PDDocument render(final PdfLayout layout) throws IOException {
+		return render(layout, null);
 	}
 
-	private void initNextPage() throws IOException {
-		this.contentStream.close();
-
-		initCurrentPage();
-
-		this.contentStream = new PDPageContentStream(this.doc, this.currentPage);
+	/**
+	 * Renders a layout into a new document as {@link #render(PdfLayout)} does, but writes the content streams of its
+	 * pages concurrently on the pool, in ranges of {@value #PAGES_PER_TASK} pages. The document is the same as one
+	 * rendered on a single thread.
+	 */
+	public PDDocument render(final PdfLayout layout, final ForkJoinPool pool) throws IOException {
+		return render((doc, boldFont, font) -> writePages(doc, layout, pool, boldFont, font));
 	}
 
-	private void initPageVars() {
-		final PDRectangle pageSize = this.currentPage.getMediaBox();
-		this.pageEndY = pageSize.getLowerLeftY() + MARGIN;
-		this.leftMarginOffset = pageSize.getLowerLeftX() + MARGIN;
-		this.heightCounter = pageSize.getUpperRightY() - MARGIN;
+	/**
+	 * Lays out and renders the form a page at a time as it is read, writing each page as soon as the next line falls
+	 * on a new one, so that only the lines of one page are held however long the form is. The document is the same as
+	 * {@link #generate()} gives, but its pages are written on this thread.
+	 */
+	public PDDocument renderPages() throws IOException {
+		return render((doc, boldFont, font) -> {
+			try (PdfSpan span = PdfSpan.start(PdfSpan.WRITE)) {
+				final int pages = PdfLayout.compile(this.reader, this.template, this.fonts, this.settings,
+						(page, layout) -> writePage(newContentStream(doc, page), layout, 0, boldFont, font));
+				span.tag(PdfSpan.PAGES_TAG, pages);
+			}
+		});
 	}
 
-	private void initPdfDocument() throws IOException {
-		final URL resource = this.getClass().getResource("/Claim.pdf");
-		this.doc = PDDocument.load(resource.openStream());
-		this.boldFont = PDType0Font.load(this.doc, getArialBoldFontStream());
-		this.font = PDType0Font.load(this.doc, getArialFontStream());
+	private PDDocument render(final PageWriter writer) throws IOException {
+		final PDDocument doc;
+		try (PdfSpan span = PdfSpan.start(PdfSpan.TEMPLATE)) {
+			doc = this.template.newDocument(this.memoryUsageSetting);
+		}
+		try {
+			final PDFont boldFont;
+			final PDFont font;
+			try (PdfSpan span = PdfSpan.start(PdfSpan.FONTS)) {
+				boldFont = this.fonts.loadBoldFont(doc);
+				font = this.fonts.loadRegularFont(doc);
+			}
+			writer.write(doc, boldFont, font);
+			return doc;
+		} catch (final IOException | RuntimeException e) {
+			doc.close();
+			throw e;
+		}
 	}
 
-	private boolean nextPage() {
-		return this.heightCounter < this.pageEndY;
+	private void writePages(final PDDocument doc, final PdfLayout layout, final ForkJoinPool pool,
+			final PDFont boldFont, final PDFont font) throws IOException {
+		try (PdfSpan span = PdfSpan.start(PdfSpan.WRITE).tag(PdfSpan.PAGES_TAG, layout.getPageCount())) {
+			final PDPageContentStream[] contentStreams = new PDPageContentStream[layout.getPageCount()];
+			if (pool == null || layout.getPageCount() <= PAGES_PER_TASK) {
+				for (int page = 0; page < layout.getPageCount(); page++) {
+					contentStreams[page] = newContentStream(doc, page);
+					writePage(contentStreams[page], layout, page, boldFont, font);
+				}
+			} else {
+				// everything shared by the pages is set up here, so writing them only reads it
+				for (int page = 0; page < layout.getPageCount(); page++) {
+					contentStreams[page] = newContentStream(doc, page);
+				}
+				// Invariant: every code point shown on any page is added to its font's subset here, before the pool
+				// is invoked. showText then calls PDType0Font.addToSubset on the pool's threads only for code points
+				// already in the embedder's HashSet, and adding those never modifies it. Text written on the pool
+				// but not registered here would modify the set concurrently; PageRangeTask asserts it never is.
+				final CodePoints registered = CHECK_SUBSETS ? new CodePoints() : null;
+				registerFonts(doc, layout, boldFont, font, registered);
+				try {
+					pool.invoke(new PageRangeTask(contentStreams, layout, 0, layout.getPageCount(), boldFont, font,
+							registered));
+				} catch (final UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+		}
 	}
 
-	private boolean nextPageQ() {
-		return this.heightCounter - Y_DECREMENT < this.pageEndY;
+	/**
+	 * Registers the fonts with the document and the shared page resources in the order they are first used, and adds
+	 * the glyphs of every line to the font subsets, as writing the pages in order would. The code points added are
+	 * also recorded, if a record is given.
+	 */
+	private static void registerFonts(final PDDocument doc, final PdfLayout layout, final PDFont boldFont,
+			final PDFont font, final CodePoints registered) throws IOException {
+		final PDFormXObject fontResources = new PDFormXObject(doc);
+		fontResources.setResources(doc.getPage(0).getResources());
+		boolean boldRegistered = false;
+		boolean regularRegistered = false;
+		try (PDPageContentStream registration = new PDPageContentStream(doc, fontResources,
+				new ByteArrayOutputStream())) {
+			for (int line = 0; line < layout.getLineCount(); line++) {
+				final PDFont lineFont;
+				if (layout.isBold(line)) {
+					lineFont = boldFont;
+					if (!boldRegistered) {
+						registration.setFont(boldFont, layout.getFontSize());
+						boldRegistered = true;
+					}
+				} else {
+					lineFont = font;
+					if (!regularRegistered) {
+						registration.setFont(font, layout.getFontSize());
+						regularRegistered = true;
+					}
+				}
+				final String text = layout.getLine(line);
+				for (int index = 0; index < text.length();) {
+					final int codePoint = text.codePointAt(index);
+					lineFont.addToSubset(codePoint);
+					if (registered != null) {
+						registered.add(layout.isBold(line), codePoint);
+					}
+					index += Character.charCount(codePoint);
+				}
+			}
+		}
 	}
 
-	private PDDocument populateDocument() throws IOException {
-		initCurrentPage();
-		try {
-			this.contentStream = new PDPageContentStream(this.doc, this.currentPage);
-			processJsonObject(this.json);
-		} finally {
-			this.contentStream.close();
+	static void writePage(final PDPageContentStream contentStream, final PdfLayout layout, final int page,
+			final PDFont boldFont, final PDFont font) throws IOException {
+		try (PDPageContentStream pageContent = contentStream) {
+			for (int line = layout.getPageStart(page); line < layout.getPageStart(page + 1); line++) {
+				pageContent.beginText();
+				pageContent.setFont(layout.isBold(line) ? boldFont : font, layout.getFontSize());
+				pageContent.newLineAtOffset(layout.getX(line), layout.getY(line));
+				pageContent.showText(layout.getLine(line));
+				pageContent.endText();
+			}
 		}
+	}
 
-		final int noOfPages = this.doc.getNumberOfPages();
-		for (int indexToRemove = noOfPages - 1; indexToRemove >= this.pageIndex; indexToRemove--) {
-			this.doc.removePage(indexToRemove);
-		}
+	private PDPageContentStream newContentStream(final PDDocument doc, final int page) throws IOException {
+		return new PDPageContentStream(doc, page < doc.getNumberOfPages() ? doc.getPage(page) : allocatePage(doc));
+	}
 
-		return this.doc;
+	private PDPage allocatePage(final PDDocument doc) {
+		final PDPage page = new PDPage(this.template.getMediaBox());
+		page.setResources(doc.getPage(0).getResources());
+		doc.addPage(page);
+		return page;
 	}
 
-	private void processJsonArray(final ArrayNode arrayNode) throws IOException {
+	/**
+	 * Writes the pages of a document once its template is copied and fonts loaded.
+	 */
+	private interface PageWriter {
 
-		final Iterator<JsonNode> elements = arrayNode.elements();
-		while (elements.hasNext()) {
-			final JsonNode element = elements.next();
-			if (element.isTextual()) {
-				addFormAnswer(element);
-			} else if (element.isObject()) {
-				processJsonObject(element);
-			} else {
-				LOGGER.error("Bad node type found for json {}", json.toString());
-				throw new IllegalArgumentException(
-						String.format("Node type: '%s' is not currently supported when processing JSON Arrays",
-								element.getNodeType().name()));
-			}
-		}
+		void write(PDDocument doc, PDFont boldFont, PDFont font) throws IOException;
 	}
 
-	private void processJsonObject(final JsonNode json) throws IOException {
+	/**
+	 * The code points added to the bold and regular font subsets before the pages are written concurrently.
+	 */
+	private static final class CodePoints {
 
-		final Iterator<Entry<String, JsonNode>> entries = json.fields();
-		while (entries.hasNext()) {
+		private final Set<Integer> bold = new HashSet<>();
+		private final Set<Integer> regular = new HashSet<>();
 
-			final Entry<String, JsonNode> entry = entries.next();
-			addFormQuestion(entry);
+		private void add(final boolean boldLine, final int codePoint) {
+			(boldLine ? this.bold : this.regular).add(codePoint);
+		}
 
-			final JsonNode valueNode = entry.getValue();
-			if (valueNode.isTextual()) {
-				addFormAnswer(valueNode);
-			} else if (valueNode.isObject()) {
-				processJsonObject(valueNode);
-			} else if (valueNode.isArray()) {
-				processJsonArray((ArrayNode) valueNode);
-			} else {
-				LOGGER.error("Bad node type found for json {}", json.toString());
-				throw new IllegalArgumentException(
-						String.format("Node type: %s for node %s is not currently supported when processing JSON objects",
-								valueNode.getNodeType().name(), entry.getKey()));
+		/**
+		 * Whether every code point on the page was added to the subset of the font it is shown in.
+		 */
+		private boolean contain(final PdfLayout layout, final int page) {
+			for (int line = layout.getPageStart(page); line < layout.getPageStart(page + 1); line++) {
+				final Set<Integer> codePoints = layout.isBold(line) ? this.bold : this.regular;
+				final String text = layout.getLine(line);
+				for (int index = 0; index < text.length();) {
+					final int codePoint = text.codePointAt(index);
+					if (!codePoints.contains(codePoint)) {
+						return false;
+					}
+					index += Character.charCount(codePoint);
+				}
 			}
+			return true;
 		}
 	}
 
+	/**
+	 * Writes a range of pages, splitting it in two while it is larger than {@value #PAGES_PER_TASK} pages.
+	 */
+	private static final class PageRangeTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient PDFont boldFont;
+		private final transient PDPageContentStream[] contentStreams;
+		private final transient PDFont font;
+		private final int from;
+		private final transient PdfLayout layout;
+		private final transient CodePoints registered;
+		private final int to;
+
+		private PageRangeTask(final PDPageContentStream[] contentStreams, final PdfLayout layout, final int from,
+				final int to, final PDFont boldFont, final PDFont font, final CodePoints registered) {
+			this.contentStreams = contentStreams;
+			this.layout = layout;
+			this.from = from;
+			this.to = to;
+			this.boldFont = boldFont;
+			this.font = font;
+			this.registered = registered;
+		}
+
+		@Override
+		protected void compute() {
+			if (this.to - this.from > PAGES_PER_TASK) {
+				final int middle = (this.from + this.to) >>> 1;
+				invokeAll(new PageRangeTask(this.contentStreams, this.layout, this.from, middle, this.boldFont,
+						this.font, this.registered),
+						new PageRangeTask(this.contentStreams, this.layout, middle, this.to, this.boldFont, this.font,
+								this.registered));
+				return;
+			}
+			try {
+				for (int page = this.from; page < this.to; page++) {
+					assert this.registered.contain(this.layout, page) : "Page " + page
+							+ " shows text not added to the font subsets before the pages were written";
+					writePage(this.contentStreams[page], this.layout, page, this.boldFont, this.font);
+				}
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
 }
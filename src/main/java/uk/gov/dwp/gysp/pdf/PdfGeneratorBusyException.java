@@ -0,0 +1,10 @@
+package uk.gov.dwp.gysp.pdf;
+
+public class PdfGeneratorBusyException extends PdfGeneratorException {
+
+	private static final long serialVersionUID = -1519764036811623457L;
+
+	public PdfGeneratorBusyException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -0,0 +1,263 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The layout of a claim form: every line of text with its font, the page it falls on and its position there. A layout
+ * is compiled once from the questions and answers, without creating a document, and can then be measured or rendered
+ * by {@link PdfGenerator#render(PdfLayout)} into as many documents as needed. Layouts are immutable and can be shared
+ * between threads. A form read as it arrives can instead be laid out a page at a time, so its lines need not all be
+ * held at once.
+ */
+public final class PdfLayout {
+
+	private static final int INITIAL_LINES = 64;
+
+	private final boolean[] bold;
+	private final float fontSize;
+	private final String[] lines;
+	private final int[] pageStarts;
+	private final float[] x;
+	private final float[] y;
+
+	private PdfLayout(final Builder builder) {
+		this.lines = Arrays.copyOf(builder.lines, builder.lineCount);
+		this.bold = Arrays.copyOf(builder.bold, builder.lineCount);
+		this.x = Arrays.copyOf(builder.x, builder.lineCount);
+		this.y = Arrays.copyOf(builder.y, builder.lineCount);
+		this.pageStarts = Arrays.copyOf(builder.pageStarts, builder.pageCount);
+		this.fontSize = builder.settings.getFontSize();
+	}
+
+	/**
+	 * Lays out the questions and answers read from the form on pages of the template's size, using the widths of the
+	 * fonts to wrap them.
+	 */
+	public static PdfLayout compile(final FormReader reader, final PdfTemplate template, final PdfFontCache fonts)
+			throws IOException {
+		return compile(reader, template, fonts, PdfLayoutSettings.getDefault());
+	}
+
+	/**
+	 * Lays out the questions and answers as {@link #compile(FormReader, PdfTemplate, PdfFontCache)} does, with the
+	 * given typography and spacing.
+	 */
+	public static PdfLayout compile(final FormReader reader, final PdfTemplate template, final PdfFontCache fonts,
+			final PdfLayoutSettings settings) throws IOException {
+		final Builder builder = new Builder(template.getMediaBox(), fonts, settings, null);
+		reader.read(builder);
+		return new PdfLayout(builder);
+	}
+
+	/**
+	 * Lays out the questions and answers as {@link #compile(FormReader, PdfTemplate, PdfFontCache, PdfLayoutSettings)}
+	 * does, but hands each page to the handler, as a layout of one page, once the next line falls on a new page. Only
+	 * the lines of one page are held at a time, however long the form. Returns the page count.
+	 */
+	public static int compile(final FormReader reader, final PdfTemplate template, final PdfFontCache fonts,
+			final PdfLayoutSettings settings, final PageHandler pages) throws IOException {
+		final Builder builder = new Builder(template.getMediaBox(), fonts, settings, pages);
+		reader.read(builder);
+		builder.endPage();
+		return builder.pagesEnded;
+	}
+
+	public float getFontSize() {
+		return this.fontSize;
+	}
+
+	public int getLineCount() {
+		return this.lines.length;
+	}
+
+	public int getPageCount() {
+		return this.pageStarts.length;
+	}
+
+	String getLine(final int line) {
+		return this.lines[line];
+	}
+
+	/**
+	 * The first line on the page, or the line count for a page past the last.
+	 */
+	int getPageStart(final int page) {
+		return page < this.pageStarts.length ? this.pageStarts[page] : this.lines.length;
+	}
+
+	float getX(final int line) {
+		return this.x[line];
+	}
+
+	float getY(final int line) {
+		return this.y[line];
+	}
+
+	boolean isBold(final int line) {
+		return this.bold[line];
+	}
+
+	/**
+	 * Receives the pages of a form laid out a page at a time.
+	 */
+	public interface PageHandler {
+
+		/**
+		 * Takes the page with the given index, starting from 0, laid out on its own.
+		 */
+		void page(int page, PdfLayout layout) throws IOException;
+	}
+
+	/**
+	 * Places each line below the last, starting a new page when the next line would fall into the bottom margin. Each
+	 * level of nesting is indented further, until the lines would be less than half their full width.
+	 */
+	private static final class Builder implements FormContentHandler {
+
+		private final TextWrapper[] answerWrappers;
+		private boolean[] bold = new boolean[INITIAL_LINES];
+		private int depth;
+		private final PdfFontCache fonts;
+		private float heightCounter;
+		private int lineCount;
+		private final float lineWidth;
+		private String[] lines = new String[INITIAL_LINES];
+		private final int maxLevel;
+		private int pageCount = 1;
+		private final float pageEndY;
+		private final PageHandler pages;
+		private int pagesEnded;
+		private int[] pageStarts = new int[4];
+		private final float pageStartY;
+		private final TextWrapper[] questionWrappers;
+		private final PdfLayoutSettings settings;
+		private float[] x = new float[INITIAL_LINES];
+		private final float x0;
+		private float[] y = new float[INITIAL_LINES];
+
+		private Builder(final PDRectangle pageSize, final PdfFontCache fonts, final PdfLayoutSettings settings,
+				final PageHandler pages) {
+			this.fonts = fonts;
+			this.pages = pages;
+			this.settings = settings;
+			this.pageEndY = pageSize.getLowerLeftY() + settings.getMarginBottom();
+			this.pageStartY = pageSize.getUpperRightY() - settings.getMarginTop();
+			this.x0 = pageSize.getLowerLeftX() + settings.getMarginLeft();
+			this.lineWidth = pageSize.getWidth() - settings.getMarginLeft() - settings.getMarginRight();
+			if (this.lineWidth <= 0 || this.pageStartY < this.pageEndY) {
+				throw new IllegalArgumentException("Pdf layout margins leave no room on a " + pageSize + " page");
+			}
+			this.heightCounter = this.pageStartY;
+			this.maxLevel = settings.getIndent() > 0 ? (int) (this.lineWidth / 2 / settings.getIndent()) : 0;
+			this.answerWrappers = new TextWrapper[this.maxLevel + 1];
+			this.questionWrappers = new TextWrapper[this.maxLevel + 1];
+		}
+
+		@Override
+		public void addFormAnswer(final String answer) throws IOException {
+			for (final String line : answerWrapper().wrap(answer)) {
+				if (nextPage()) {
+					initNextPage();
+				}
+				addLine(line, false);
+				this.heightCounter -= this.settings.getLeading();
+			}
+			this.heightCounter -= this.settings.getAnswerSpacing();
+		}
+
+		@Override
+		public void addFormQuestion(final String question) throws IOException {
+			final List<String> questionLines = questionWrapper().wrap(question);
+			for (int index = 0; index < questionLines.size(); index++) {
+				// keep the last line of a question on the same page as the start of its answer
+				if (index == questionLines.size() - 1 ? nextPageQ() : nextPage()) {
+					initNextPage();
+				}
+				addLine(questionLines.get(index), true);
+				this.heightCounter -= this.settings.getLeading();
+			}
+			this.heightCounter -= this.settings.getQuestionSpacing();
+		}
+
+		@Override
+		public void endGroup() {
+			this.depth--;
+		}
+
+		@Override
+		public void startGroup() {
+			this.depth++;
+		}
+
+		private void addLine(final String line, final boolean boldLine) {
+			if (this.lineCount == this.lines.length) {
+				final int capacity = this.lineCount * 2;
+				this.lines = Arrays.copyOf(this.lines, capacity);
+				this.bold = Arrays.copyOf(this.bold, capacity);
+				this.x = Arrays.copyOf(this.x, capacity);
+				this.y = Arrays.copyOf(this.y, capacity);
+			}
+			this.lines[this.lineCount] = line;
+			this.bold[this.lineCount] = boldLine;
+			this.x[this.lineCount] = this.x0 + level() * this.settings.getIndent();
+			this.y[this.lineCount] = this.heightCounter;
+			this.lineCount++;
+		}
+
+		private TextWrapper answerWrapper() {
+			final int level = level();
+			if (this.answerWrappers[level] == null) {
+				this.answerWrappers[level] = new TextWrapper(this.fonts.getRegularMetrics(),
+						this.settings.getFontSize(), this.lineWidth - level * this.settings.getIndent());
+			}
+			return this.answerWrappers[level];
+		}
+
+		/**
+		 * Hands the page laid out so far to the page handler and starts the next one empty.
+		 */
+		private void endPage() throws IOException {
+			this.pages.page(this.pagesEnded++, new PdfLayout(this));
+			Arrays.fill(this.lines, 0, this.lineCount, null);
+			this.lineCount = 0;
+		}
+
+		private void initNextPage() throws IOException {
+			if (this.pages != null) {
+				endPage();
+			} else {
+				if (this.pageCount == this.pageStarts.length) {
+					this.pageStarts = Arrays.copyOf(this.pageStarts, this.pageCount * 2);
+				}
+				this.pageStarts[this.pageCount++] = this.lineCount;
+			}
+			this.heightCounter = this.pageStartY;
+		}
+
+		private int level() {
+			return Math.min(this.depth, this.maxLevel);
+		}
+
+		private boolean nextPage() {
+			return this.heightCounter < this.pageEndY;
+		}
+
+		private boolean nextPageQ() {
+			return this.heightCounter - this.settings.getLeading() - this.settings.getQuestionSpacing()
+					< this.pageEndY;
+		}
+
+		private TextWrapper questionWrapper() {
+			final int level = level();
+			if (this.questionWrappers[level] == null) {
+				this.questionWrappers[level] = new TextWrapper(this.fonts.getBoldMetrics(),
+						this.settings.getFontSize(), this.lineWidth - level * this.settings.getIndent());
+			}
+			return this.questionWrappers[level];
+		}
+	}
+}
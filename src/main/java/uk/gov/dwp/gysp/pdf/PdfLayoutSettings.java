@@ -0,0 +1,327 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The typography and spacing a claim is laid out with, in points: the font size, the leading from one line to the
+ * next, the page margins, how far each level of nested answers is indented and the extra space left after a question
+ * and after an answer. The defaults are those claims have always been laid out with. Settings are immutable; each
+ * request can override those the service is configured with by the names of their properties, for example
+ * {@code ?leading=12&answer-spacing=6}.
+ */
+public final class PdfLayoutSettings {
+
+	public static final String ANSWER_SPACING = "answer-spacing";
+	public static final String FONT_SIZE = "font-size";
+	public static final String INDENT = "indent";
+	public static final String LEADING = "leading";
+	public static final String MARGIN = "margin";
+	public static final String MARGIN_BOTTOM = "margin-bottom";
+	public static final String MARGIN_LEFT = "margin-left";
+	public static final String MARGIN_RIGHT = "margin-right";
+	public static final String MARGIN_TOP = "margin-top";
+	public static final String QUESTION_SPACING = "question-spacing";
+
+	private static final PdfLayoutSettings DEFAULT = builder().build();
+	private static final Set<String> NAMES = new HashSet<>(Arrays.asList(ANSWER_SPACING, FONT_SIZE, INDENT, LEADING,
+			MARGIN, MARGIN_BOTTOM, MARGIN_LEFT, MARGIN_RIGHT, MARGIN_TOP, QUESTION_SPACING));
+
+	private final float answerSpacing;
+	private final float fontSize;
+	private final float indent;
+	private final String key;
+	private final float leading;
+	private final float marginBottom;
+	private final float marginLeft;
+	private final float marginRight;
+	private final float marginTop;
+	private final float questionSpacing;
+
+	private PdfLayoutSettings(final Builder builder) {
+		this.answerSpacing = builder.answerSpacing;
+		this.fontSize = builder.fontSize;
+		this.indent = builder.indent;
+		this.leading = builder.leading;
+		this.marginBottom = builder.marginBottom;
+		this.marginLeft = builder.marginLeft;
+		this.marginRight = builder.marginRight;
+		this.marginTop = builder.marginTop;
+		this.questionSpacing = builder.questionSpacing;
+		this.key = FONT_SIZE + '=' + this.fontSize + ',' + LEADING + '=' + this.leading + ',' + MARGIN_TOP + '='
+				+ this.marginTop + ',' + MARGIN_RIGHT + '=' + this.marginRight + ',' + MARGIN_BOTTOM + '='
+				+ this.marginBottom + ',' + MARGIN_LEFT + '=' + this.marginLeft + ',' + INDENT + '=' + this.indent
+				+ ',' + QUESTION_SPACING + '=' + this.questionSpacing + ',' + ANSWER_SPACING + '='
+				+ this.answerSpacing;
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	public static PdfLayoutSettings getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Whether the parameters name any setting.
+	 */
+	public static boolean isOverridden(final Map<String, String> overrides) {
+		for (final String name : overrides.keySet()) {
+			if (NAMES.contains(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static float parse(final String name, final String value) throws InvalidLayoutException {
+		try {
+			return Float.parseFloat(value);
+		} catch (final NumberFormatException e) {
+			throw new InvalidLayoutException("Pdf layout " + name + " is not a number", e);
+		}
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof PdfLayoutSettings && this.key.equals(((PdfLayoutSettings) obj).key);
+	}
+
+	public float getAnswerSpacing() {
+		return this.answerSpacing;
+	}
+
+	public float getFontSize() {
+		return this.fontSize;
+	}
+
+	public float getIndent() {
+		return this.indent;
+	}
+
+	/**
+	 * Every setting by name, identifying the layout of PDFs generated with these settings.
+	 */
+	public String getKey() {
+		return this.key;
+	}
+
+	public float getLeading() {
+		return this.leading;
+	}
+
+	public float getMarginBottom() {
+		return this.marginBottom;
+	}
+
+	public float getMarginLeft() {
+		return this.marginLeft;
+	}
+
+	public float getMarginRight() {
+		return this.marginRight;
+	}
+
+	public float getMarginTop() {
+		return this.marginTop;
+	}
+
+	public float getQuestionSpacing() {
+		return this.questionSpacing;
+	}
+
+	@Override
+	public int hashCode() {
+		return this.key.hashCode();
+	}
+
+	public Builder toBuilder() {
+		return new Builder(this);
+	}
+
+	@Override
+	public String toString() {
+		return this.key;
+	}
+
+	/**
+	 * These settings with any of them named in the overrides replaced, {@code margin} setting all four margins before
+	 * any one of them, and anything else in the overrides ignored.
+	 */
+	public PdfLayoutSettings with(final Map<String, String> overrides) throws InvalidLayoutException {
+		final Builder builder = toBuilder();
+		if (overrides.containsKey(MARGIN)) {
+			builder.margin(parse(MARGIN, overrides.get(MARGIN)));
+		}
+		for (final Map.Entry<String, String> override : overrides.entrySet()) {
+			final String name = override.getKey();
+			switch (name) {
+			case ANSWER_SPACING:
+				builder.answerSpacing(parse(name, override.getValue()));
+				break;
+			case FONT_SIZE:
+				builder.fontSize(parse(name, override.getValue()));
+				break;
+			case INDENT:
+				builder.indent(parse(name, override.getValue()));
+				break;
+			case LEADING:
+				builder.leading(parse(name, override.getValue()));
+				break;
+			case MARGIN_BOTTOM:
+				builder.marginBottom(parse(name, override.getValue()));
+				break;
+			case MARGIN_LEFT:
+				builder.marginLeft(parse(name, override.getValue()));
+				break;
+			case MARGIN_RIGHT:
+				builder.marginRight(parse(name, override.getValue()));
+				break;
+			case MARGIN_TOP:
+				builder.marginTop(parse(name, override.getValue()));
+				break;
+			case QUESTION_SPACING:
+				builder.questionSpacing(parse(name, override.getValue()));
+				break;
+			default:
+				break;
+			}
+		}
+		try {
+			return builder.build();
+		} catch (final IllegalArgumentException e) {
+			throw new InvalidLayoutException(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Builds settings, starting from the defaults. Each setting is checked to be within a range that leaves room for
+	 * text on any page from A5 up.
+	 */
+	public static final class Builder {
+
+		private static final float MAX_FONT_SIZE = 72;
+		private static final float MAX_INDENT = 72;
+		private static final float MAX_LEADING = 144;
+		private static final float MAX_MARGIN = 144;
+		private static final float MAX_SPACING = 144;
+		private static final float MIN_FONT_SIZE = 4;
+
+		private float answerSpacing = 20;
+		private float fontSize = 10;
+		private float indent;
+		private float leading = 20;
+		private float marginBottom = 72;
+		private float marginLeft = 72;
+		private float marginRight = 72;
+		private float marginTop = 72;
+		private float questionSpacing;
+
+		private Builder() {
+		}
+
+		private Builder(final PdfLayoutSettings settings) {
+			this.answerSpacing = settings.answerSpacing;
+			this.fontSize = settings.fontSize;
+			this.indent = settings.indent;
+			this.leading = settings.leading;
+			this.marginBottom = settings.marginBottom;
+			this.marginLeft = settings.marginLeft;
+			this.marginRight = settings.marginRight;
+			this.marginTop = settings.marginTop;
+			this.questionSpacing = settings.questionSpacing;
+		}
+
+		private static void check(final String name, final float value, final float min, final float max) {
+			// written so that NaN fails too
+			if (!(value >= min && value <= max)) {
+				throw new IllegalArgumentException(
+						"Pdf layout " + name + " must be between " + min + " and " + max + ", not " + value);
+			}
+		}
+
+		/**
+		 * The extra space after an answer, before the next question.
+		 */
+		public Builder answerSpacing(final float answerSpacing) {
+			this.answerSpacing = answerSpacing;
+			return this;
+		}
+
+		public PdfLayoutSettings build() {
+			check(FONT_SIZE, this.fontSize, MIN_FONT_SIZE, MAX_FONT_SIZE);
+			check(LEADING, this.leading, 1, MAX_LEADING);
+			check(MARGIN_TOP, this.marginTop, 0, MAX_MARGIN);
+			check(MARGIN_RIGHT, this.marginRight, 0, MAX_MARGIN);
+			check(MARGIN_BOTTOM, this.marginBottom, 0, MAX_MARGIN);
+			check(MARGIN_LEFT, this.marginLeft, 0, MAX_MARGIN);
+			check(INDENT, this.indent, 0, MAX_INDENT);
+			check(QUESTION_SPACING, this.questionSpacing, 0, MAX_SPACING);
+			check(ANSWER_SPACING, this.answerSpacing, 0, MAX_SPACING);
+			return new PdfLayoutSettings(this);
+		}
+
+		public Builder fontSize(final float fontSize) {
+			this.fontSize = fontSize;
+			return this;
+		}
+
+		/**
+		 * How much further each level of nested answers is indented than the one it is nested in.
+		 */
+		public Builder indent(final float indent) {
+			this.indent = indent;
+			return this;
+		}
+
+		/**
+		 * The distance from one line's baseline to the next.
+		 */
+		public Builder leading(final float leading) {
+			this.leading = leading;
+			return this;
+		}
+
+		/**
+		 * Sets all four margins.
+		 */
+		public Builder margin(final float margin) {
+			this.marginTop = margin;
+			this.marginRight = margin;
+			this.marginBottom = margin;
+			this.marginLeft = margin;
+			return this;
+		}
+
+		public Builder marginBottom(final float marginBottom) {
+			this.marginBottom = marginBottom;
+			return this;
+		}
+
+		public Builder marginLeft(final float marginLeft) {
+			this.marginLeft = marginLeft;
+			return this;
+		}
+
+		public Builder marginRight(final float marginRight) {
+			this.marginRight = marginRight;
+			return this;
+		}
+
+		public Builder marginTop(final float marginTop) {
+			this.marginTop = marginTop;
+			return this;
+		}
+
+		/**
+		 * The extra space after a question, before its answer.
+		 */
+		public Builder questionSpacing(final float questionSpacing) {
+			this.questionSpacing = questionSpacing;
+			return this;
+		}
+	}
+}
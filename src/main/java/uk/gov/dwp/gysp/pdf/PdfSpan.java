@@ -0,0 +1,75 @@
+package uk.gov.dwp.gysp.pdf;
+
+import brave.Span;
+import brave.Tracer;
+import brave.Tracing;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * A child of the span in scope, timing one stage of generating a PDF so the trace of a slow request shows which stage
+ * it spent its time in. Spans are only started while Sleuth is tracing, within a request, so stages run elsewhere, such
+ * as during warm up or outside of Spring, cost nothing and report nothing.
+ */
+public final class PdfSpan implements AutoCloseable {
+
+	public static final String FONTS = "pdf-fonts";
+	public static final String LAYOUT = "pdf-layout";
+	public static final String PARSE = "pdf-parse";
+	public static final String SAVE = "pdf-save";
+	public static final String TEMPLATE = "pdf-template";
+	public static final String WRITE = "pdf-write";
+
+	public static final String BYTES_TAG = "pdf.bytes";
+	public static final String CLAIMS_TAG = "pdf.claims";
+	public static final String FIELDS_TAG = "pdf.fields";
+	public static final String JSON_BYTES_TAG = "pdf.json.bytes";
+	public static final String PAGES_TAG = "pdf.pages";
+
+	private static final PdfSpan UNTRACED = new PdfSpan(null, null);
+
+	private final Tracer.SpanInScope scope;
+	private final Span span;
+
+	private PdfSpan(final Span span, final Tracer.SpanInScope scope) {
+		this.span = span;
+		this.scope = scope;
+	}
+
+	/**
+	 * Starts a span of the given name as a child of the span in scope, and puts it in scope until it is closed.
+	 */
+	public static PdfSpan start(final String name) {
+		final Tracing tracing = Tracing.current();
+		if (tracing == null || tracing.currentTraceContext().get() == null) {
+			return UNTRACED;
+		}
+		final Tracer tracer = tracing.tracer();
+		final Span span = tracer.nextSpan().name(name).start();
+		return new PdfSpan(span, tracer.withSpanInScope(span));
+	}
+
+	/**
+	 * An executor that runs each task in the trace of the thread that submitted it, so stages rendered on a pool are
+	 * traced as part of the request.
+	 */
+	public static ExecutorService inTrace(final ExecutorService executor) {
+		final Tracing tracing = Tracing.current();
+		return tracing == null ? executor : tracing.currentTraceContext().executorService(executor);
+	}
+
+	@Override
+	public void close() {
+		if (this.span != null) {
+			this.scope.close();
+			this.span.finish();
+		}
+	}
+
+	public PdfSpan tag(final String key, final long value) {
+		if (this.span != null) {
+			this.span.tag(key, Long.toString(value));
+		}
+		return this;
+	}
+}
@@ -0,0 +1,222 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * A PDF template parsed once and kept in memory. Each call to {@link #newDocument()} returns an independent copy of
+ * the template, so many documents can be generated from it concurrently without re-reading or re-parsing the source.
+ * Only the first page of the source is kept; further pages are added by the caller as needed, using
+ * {@link #getMediaBox()}.
+ */
+public final class PdfTemplate {
+
+	private static final String DEFAULT_TEMPLATE = "/Claim.pdf";
+
+	private final float mediaBoxHeight;
+	private final float mediaBoxWidth;
+	private final float mediaBoxX;
+	private final float mediaBoxY;
+	private final Map<COSStream, byte[]> streamData;
+	private final COSDictionary trailer;
+	private final float version;
+
+	private PdfTemplate(final float version, final COSDictionary trailer, final Map<COSStream, byte[]> streamData,
+			final PDRectangle mediaBox) {
+		this.version = version;
+		this.trailer = trailer;
+		this.streamData = streamData;
+		this.mediaBoxX = mediaBox.getLowerLeftX();
+		this.mediaBoxY = mediaBox.getLowerLeftY();
+		this.mediaBoxWidth = mediaBox.getWidth();
+		this.mediaBoxHeight = mediaBox.getHeight();
+	}
+
+	public static PdfTemplate getDefault() {
+		return DefaultTemplateHolder.INSTANCE;
+	}
+
+	public static PdfTemplate load(final InputStream input) throws IOException {
+		try (PDDocument source = PDDocument.load(input); COSDocument prototype = new COSDocument()) {
+			final COSDocument sourceDocument = source.getDocument();
+			final PDRectangle mediaBox = source.getPage(0).getMediaBox();
+			removeTrailingPages(source);
+			final Map<COSStream, byte[]> streamData = new IdentityHashMap<>();
+			final COSDictionary trailer = (COSDictionary) copy(sourceDocument.getTrailer(), prototype,
+					new IdentityHashMap<>(), stream -> {
+						try (InputStream raw = stream.createRawInputStream()) {
+							return IOUtils.toByteArray(raw);
+						}
+					}, streamData);
+			return new PdfTemplate(sourceDocument.getVersion(), trailer, streamData, mediaBox);
+		}
+	}
+
+	public PDRectangle getMediaBox() {
+		return new PDRectangle(this.mediaBoxX, this.mediaBoxY, this.mediaBoxWidth, this.mediaBoxHeight);
+	}
+
+	public PDDocument newDocument() throws IOException {
+		return newDocument(ScratchFile.getMainMemoryOnlyInstance());
+	}
+
+	/**
+	 * Copies the template into a document whose stream data is kept as the memory usage setting allows, spilling to a
+	 * temporary file past its main memory limit.
+	 */
+	public PDDocument newDocument(final MemoryUsageSetting memoryUsageSetting) throws IOException {
+		return newDocument(new ScratchFile(memoryUsageSetting));
+	}
+
+	private PDDocument newDocument(final ScratchFile scratchFile) throws IOException {
+		final COSDocument document = new COSDocument(scratchFile);
+		document.setVersion(this.version);
+		document.setTrailer((COSDictionary) copy(this.trailer, document, new IdentityHashMap<>(), this.streamData::get,
+				null));
+		return new PDDocument(document);
+	}
+
+	private static COSBase copy(final COSBase base, final COSDocument target, final Map<COSBase, COSBase> copies,
+			final StreamData source, final Map<COSStream, byte[]> captured) throws IOException {
+
+		if (base == null) {
+			return null;
+		}
+		final COSBase existing = copies.get(base);
+		if (existing != null) {
+			return existing;
+		}
+
+		if (base instanceof COSObject) {
+			final COSObject object = (COSObject) base;
+			final COSObject result = new COSObject(null);
+			result.setObjectNumber(object.getObjectNumber());
+			result.setGenerationNumber(object.getGenerationNumber());
+			copies.put(base, result);
+			result.setObject(copy(object.getObject(), target, copies, source, captured));
+			return result;
+		}
+		if (base instanceof COSStream) {
+			final COSStream stream = (COSStream) base;
+			final COSStream result = target.createCOSStream();
+			copies.put(base, result);
+			copyItems(stream, result, target, copies, source, captured);
+			final byte[] data = source.rawData(stream);
+			if (captured != null) {
+				// building the template itself: keep the data on heap, where it can be read concurrently
+				captured.put(result, data);
+			} else {
+				try (OutputStream output = result.createRawOutputStream()) {
+					output.write(data);
+				}
+			}
+			result.setDirect(stream.isDirect());
+			return result;
+		}
+		if (base instanceof COSDictionary) {
+			final COSDictionary dictionary = (COSDictionary) base;
+			final COSDictionary result = new COSDictionary();
+			copies.put(base, result);
+			copyItems(dictionary, result, target, copies, source, captured);
+			result.setDirect(dictionary.isDirect());
+			return result;
+		}
+		if (base instanceof COSArray) {
+			final COSArray array = (COSArray) base;
+			final COSArray result = new COSArray();
+			copies.put(base, result);
+			for (final COSBase item : array) {
+				result.add(copy(item, target, copies, source, captured));
+			}
+			result.setDirect(array.isDirect());
+			return result;
+		}
+		// names, strings, numbers, booleans and null are never modified once parsed, so can be shared
+		return base;
+	}
+
+	private static void removeTrailingPages(final PDDocument source) {
+		final Set<COSBase> removedPages = Collections.newSetFromMap(new IdentityHashMap<>());
+		while (source.getNumberOfPages() > 1) {
+			final PDPage page = source.getPage(source.getNumberOfPages() - 1);
+			removedPages.add(page.getCOSObject());
+			source.removePage(page);
+		}
+
+		final PDStructureTreeRoot structureTreeRoot = source.getDocumentCatalog().getStructureTreeRoot();
+		if (structureTreeRoot != null) {
+			removeStructureElements(structureTreeRoot.getCOSObject(), removedPages);
+		}
+	}
+
+	private static void removeStructureElements(final COSDictionary parent, final Set<COSBase> removedPages) {
+		final COSBase kids = parent.getDictionaryObject(COSName.K);
+		if (kids instanceof COSArray) {
+			final COSArray array = (COSArray) kids;
+			for (int index = array.size() - 1; index >= 0; index--) {
+				final COSBase kid = array.getObject(index);
+				if (kid instanceof COSDictionary) {
+					if (removedPages.contains(((COSDictionary) kid).getDictionaryObject(COSName.PG))) {
+						array.remove(index);
+					} else {
+						removeStructureElements((COSDictionary) kid, removedPages);
+					}
+				}
+			}
+		} else if (kids instanceof COSDictionary) {
+			if (removedPages.contains(((COSDictionary) kids).getDictionaryObject(COSName.PG))) {
+				parent.removeItem(COSName.K);
+			} else {
+				removeStructureElements((COSDictionary) kids, removedPages);
+			}
+		}
+	}
+
+	private static void copyItems(final COSDictionary from, final COSDictionary to, final COSDocument target,
+			final Map<COSBase, COSBase> copies, final StreamData source, final Map<COSStream, byte[]> captured)
+			throws IOException {
+		for (final Entry<COSName, COSBase> entry : from.entrySet()) {
+			to.setItem(entry.getKey(), copy(entry.getValue(), target, copies, source, captured));
+		}
+	}
+
+	@FunctionalInterface
+	private interface StreamData {
+		byte[] rawData(COSStream stream) throws IOException;
+	}
+
+	private static final class DefaultTemplateHolder {
+
+		private static final PdfTemplate INSTANCE = loadDefault();
+
+		private static PdfTemplate loadDefault() {
+			try (InputStream input = PdfTemplate.class.getResourceAsStream(DEFAULT_TEMPLATE)) {
+				return load(input);
+			} catch (final IOException e) {
+				throw new UncheckedIOException("Unable to load pdf template " + DEFAULT_TEMPLATE, e);
+			}
+		}
+	}
+}
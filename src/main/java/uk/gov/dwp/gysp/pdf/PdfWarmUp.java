@@ -0,0 +1,161 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.endpoint.web.annotation.WebEndpoint;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfRenderOptions;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the service up once the application has started, when {@code pdf.warmup.enabled} is set: renders a set of
+ * synthetic claims, parsed up front and streamed, through the application's own processor in rounds until a round
+ * takes within 10% of the time of the one before or {@code pdf.warmup.max-rounds} have run. Until then
+ * {@code /actuator/ready} answers {@code 503}, so a readiness probe checking it does not send the service requests
+ * while PDFBox is still being loaded and compiled. It is for readiness probes only: a liveness probe should keep
+ * checking {@code /actuator/health}, which the warm-up leaves alone, so a cold instance is not restarted. Without
+ * warm-up, or once it has finished or failed, the service is ready.
+ */
+@Component
+@WebEndpoint(id = "ready")
+public class PdfWarmUp {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfWarmUp.class);
+	private static final int MIN_ROUNDS = 3;
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final double SETTLED_CHANGE = 0.1;
+
+	private final boolean enabled;
+	private volatile Health health;
+	private final int maxRounds;
+	private final PdfGeneratorProcessor processor;
+
+	@Autowired
+	public PdfWarmUp(final PdfGeneratorProcessor processor,
+			@Value("${pdf.warmup.enabled:false}") final boolean enabled,
+			@Value("${pdf.warmup.max-rounds:50}") final int maxRounds) {
+		this.processor = processor;
+		this.enabled = enabled;
+		this.maxRounds = maxRounds;
+		this.health = enabled ? Health.outOfService().withDetail("warmUp", "pending").build()
+				: Health.up().withDetail("warmUp", "disabled").build();
+	}
+
+	private static List<String> claims() {
+		final List<String> claims = new ArrayList<>();
+		final ObjectNode flat = OBJECT_MAPPER.createObjectNode();
+		for (int i = 0; i < 40; i++) {
+			flat.put("Question " + i, "Answer to question " + i);
+		}
+		claims.add(flat.toString());
+
+		final ObjectNode nested = OBJECT_MAPPER.createObjectNode();
+		final ArrayNode addresses = nested.putObject("Person").put("First Name", "Jim").put("Surname", "Nameless")
+				.putArray("Addresses");
+		for (int i = 0; i < 5; i++) {
+			addresses.addObject().put("Line 1", i + " High Street").put("Postcode", "AB1 2CD");
+		}
+		addresses.add("No fixed abode");
+		claims.add(nested.toString());
+
+		final StringBuilder answer = new StringBuilder();
+		for (int i = 0; i < 120; i++) {
+			answer.append(i % 7 == 0 ? "circumstances" : "the claimant").append(' ');
+		}
+		final ObjectNode text = OBJECT_MAPPER.createObjectNode();
+		for (int i = 0; i < 10; i++) {
+			text.put("Details of change " + i, answer.toString().trim());
+		}
+		text.put("Náme", "Zoë Brontë, rue de l'Église, Besançon");
+		claims.add(text.toString());
+		return claims;
+	}
+
+	/**
+	 * The warm-up's progress, answered with {@code 503} until the service is ready.
+	 */
+	@ReadOperation
+	public WebEndpointResponse<Health> ready() {
+		final Health current = this.health;
+		return new WebEndpointResponse<>(current, Status.UP.equals(current.getStatus())
+				? WebEndpointResponse.STATUS_OK : WebEndpointResponse.STATUS_SERVICE_UNAVAILABLE);
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		if (!this.enabled) {
+			return;
+		}
+		final Thread thread = new Thread(this::warmUp, "pdf-warm-up");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	void warmUp() {
+		this.health = Health.outOfService().withDetail("warmUp", "running").build();
+		try {
+			final List<String> claims = claims();
+			long previous = Long.MAX_VALUE;
+			int round = 0;
+			long elapsed;
+			while (true) {
+				round++;
+				final long start = System.nanoTime();
+				for (final String claim : claims) {
+					// written to a stream rather than returned, so the synthetic claims are never cached
+					this.processor.generatePdf(PdfRenderOptions.defaults(), OBJECT_MAPPER.readTree(claim),
+							NullOutputStream.INSTANCE);
+					this.processor.generatePdf(PdfRenderOptions.defaults(),
+							new ByteArrayInputStream(claim.getBytes(StandardCharsets.UTF_8)), NullOutputStream.INSTANCE);
+				}
+				elapsed = System.nanoTime() - start;
+				if (round >= this.maxRounds
+						|| round >= MIN_ROUNDS && Math.abs(previous - elapsed) <= previous * SETTLED_CHANGE) {
+					break;
+				}
+				previous = elapsed;
+			}
+			final long roundMillis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+			LOGGER.info("Warmed up after {} rounds, the last taking {}ms", round, roundMillis);
+			this.health = Health.up().withDetail("warmUpRounds", round).withDetail("lastRoundMillis", roundMillis)
+					.build();
+		} catch (final Throwable e) {
+			// a failed warm-up, whatever the cause, leaves the service cold, not broken
+			LOGGER.warn("Unable to warm up", e);
+			this.health = Health.up().withDetail("warmUp", "failed").build();
+		}
+	}
+
+	private static final class NullOutputStream extends OutputStream {
+
+		private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+		@Override
+		public void write(final int b) {
+			// discarded
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) {
+			// discarded
+		}
+	}
+}
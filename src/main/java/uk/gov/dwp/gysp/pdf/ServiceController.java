@@ -1,7 +1,8 @@
 package uk.gov.dwp.gysp.pdf;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Timer;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -9,22 +10,54 @@ import io.swagger.annotations.ApiResponses;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uk.gov.dwp.gysp.pdf.processor.PdfBatchProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorMetrics;
 import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfRenderExecutor;
+import uk.gov.dwp.gysp.pdf.processor.PdfRenderOptions;
+import uk.gov.dwp.gysp.pdf.processor.PdfTemplateRegistry;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping(value = "/api/pdfGenerator")
 @Api(value = "/pdfGenerator", tags = { "PDF" }, description = "PDF Generation service")
 public class ServiceController {
 
+	private static final MediaType APPLICATION_ZIP = MediaType.parseMediaType("application/zip");
+	private static final String INVALID_JSON = "Unable to read json";
+	private static final String RETRY_AFTER_SECONDS = "1";
+
+	@Autowired
+	private PdfBatchProcessor pdfBatchProcessor;
+
 	@Autowired
 	private PdfGeneratorProcessor pdfGeneratorProcessor;
 
+	@Autowired
+	private PdfGeneratorMetrics pdfGeneratorMetrics;
+
+	@Autowired
+	private PdfRenderExecutor pdfRenderExecutor;
+
+	@Autowired
+	private PdfTemplateRegistry pdfTemplateRegistry;
+
+	@Value("${pdf.json.max-bytes:10485760}")
+	private long maxJsonBytes;
+
 	private static final Logger LOGGER = LoggerFactory.getLogger(ServiceController.class);
 
 	@ExceptionHandler(Throwable.class)
@@ -33,22 +66,240 @@ public class ServiceController {
 		return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
 	}
 
+	@ExceptionHandler(InvalidJsonException.class)
+	public static ResponseEntity<Void> handleInvalidJsonException(HttpServletRequest req, InvalidJsonException ex) {
+		return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	}
+
+	@ExceptionHandler(JsonTooLargeException.class)
+	public static ResponseEntity<Void> handleJsonTooLargeException(HttpServletRequest req,
+			JsonTooLargeException ex) {
+		return new ResponseEntity<>(HttpStatus.PAYLOAD_TOO_LARGE);
+	}
+
+	@ExceptionHandler(InvalidLayoutException.class)
+	public static ResponseEntity<Void> handleInvalidLayoutException(HttpServletRequest req,
+			InvalidLayoutException ex) {
+		LOGGER.warn("Refusing request: {}", ex.getMessage());
+		return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+	}
+
+	@ExceptionHandler(UnknownTemplateException.class)
+	public static ResponseEntity<Void> handleUnknownTemplateException(HttpServletRequest req,
+			UnknownTemplateException ex) {
+		LOGGER.warn("Refusing request: {}", ex.getMessage());
+		return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+	}
+
+	@ExceptionHandler(PdfGeneratorBusyException.class)
+	public static ResponseEntity<Void> handleBusyException(HttpServletRequest req, PdfGeneratorBusyException ex) {
+		LOGGER.warn("Refusing request: {}", ex.getMessage());
+		return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+				.build();
+	}
+
+	/**
+	 * The template asked for, and the processor's layout settings with those named in the request's parameters
+	 * overriding them, or the processor's own settings if the request names none.
+	 */
+	private PdfRenderOptions options(final String template, final Map<String, String> parameters)
+			throws InvalidLayoutException {
+		if (!PdfLayoutSettings.isOverridden(parameters)) {
+			return PdfRenderOptions.of(template, null);
+		}
+		return PdfRenderOptions.of(template, pdfGeneratorProcessor.getLayoutSettings().with(parameters));
+	}
+
+	/**
+	 * Limits a request body to {@code pdf.json.max-bytes}, for those read as they are generated as well as those read
+	 * up front. A batch or bundle of claims is limited claim by claim, however large it is as a whole.
+	 */
+	private LimitedInputStream limit(final InputStream json) {
+		return new LimitedInputStream(json, this.maxJsonBytes);
+	}
+
+	private JsonNode readJson(final InputStream json) throws InvalidJsonException {
+		final Timer.Sample parse = pdfGeneratorMetrics.start();
+		try (PdfSpan span = PdfSpan.start(PdfSpan.PARSE)) {
+			final LimitedInputStream input = limit(json);
+			final JsonNode jsonNode = this.pdfGeneratorProcessor.getClaimReader().readTree(input);
+			if (jsonNode == null) {
+				throw new JsonMappingException(null, "No json content found");
+			}
+			span.tag(PdfSpan.JSON_BYTES_TAG, input.getCount());
+			pdfGeneratorMetrics.recordParse(parse);
+			return jsonNode;
+		} catch (final LimitedInputStream.LimitExceededException e) {
+			LOGGER.error("Refusing json of more than {} bytes", this.maxJsonBytes);
+			final InvalidJsonException tooLarge = new JsonTooLargeException(INVALID_JSON, e);
+			pdfGeneratorMetrics.recordInvalidJson(tooLarge);
+			throw tooLarge;
+		} catch (final IOException e) {
+			LOGGER.error("Error reading json", e);
+			final InvalidJsonException invalidJson = new InvalidJsonException(INVALID_JSON, e);
+			pdfGeneratorMetrics.recordInvalidJson(invalidJson);
+			throw invalidJson;
+		}
+	}
+
 	@RequestMapping(value = "generatePdf", method = RequestMethod.POST)
 	@ApiOperation(value = "Generate PDF bytes", notes = "This endpoint generates a PDF in bytes")
 	@ApiResponses(value = { @ApiResponse(code = 200, message = "PDF bytes generated successfully"),
-			@ApiResponse(code = 400, message = "Invalid Json format provided"),
+			@ApiResponse(code = 400, message = "Invalid Json format or layout provided"),
+			@ApiResponse(code = 404, message = "Unknown template requested"),
+			@ApiResponse(code = 413, message = "Json larger than allowed"),
 			@ApiResponse(code = 500, message = "Error while processing the request") })
-	public ResponseEntity<byte[]> generatePdf(@RequestBody final String json) throws PdfGeneratorException {
+	public ResponseEntity<byte[]> generatePdf(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream json)
+			throws PdfGeneratorException {
 
-		final JsonNode jsonNode;
-		try {
-			jsonNode = new ObjectMapper().readTree(json);
-		} catch (final IOException e) {
-			LOGGER.error("Error reading json {} ", json, e);
-			return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
-		}
+		final PdfRenderOptions options = options(template, parameters);
+		final JsonNode jsonNode = readJson(json);
 
-		final byte[] bytes = pdfGeneratorProcessor.generatePdfStream(jsonNode);
+		final byte[] bytes = pdfGeneratorProcessor.generatePdfStream(options, jsonNode);
 		return new ResponseEntity<>(bytes, HttpStatus.OK);
 	}
+
+	@RequestMapping(value = "estimatePdf", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
+	@ApiOperation(value = "Estimate a PDF", notes = "This endpoint lays out a PDF without generating it, returning its "
+			+ "page count and approximate size in bytes")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "PDF estimated successfully"),
+			@ApiResponse(code = 400, message = "Invalid Json format or layout provided"),
+			@ApiResponse(code = 404, message = "Unknown template requested"),
+			@ApiResponse(code = 413, message = "Json larger than allowed"),
+			@ApiResponse(code = 500, message = "Error while processing the request") })
+	public ResponseEntity<PdfEstimate> estimatePdf(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream json)
+			throws PdfGeneratorException {
+
+		final PdfRenderOptions options = options(template, parameters);
+		final JsonNode jsonNode = readJson(json);
+
+		return new ResponseEntity<>(pdfGeneratorProcessor.estimate(options, jsonNode), HttpStatus.OK);
+	}
+
+	@RequestMapping(value = "generatePdfAsync", method = RequestMethod.POST)
+	@ApiOperation(value = "Generate PDF bytes asynchronously", notes = "This endpoint generates a PDF in bytes on a "
+			+ "dedicated render pool, releasing the request thread while it waits")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "PDF bytes generated successfully"),
+			@ApiResponse(code = 400, message = "Invalid Json format or layout provided"),
+			@ApiResponse(code = 404, message = "Unknown template requested"),
+			@ApiResponse(code = 413, message = "Json larger than allowed"),
+			@ApiResponse(code = 500, message = "Error while processing the request"),
+			@ApiResponse(code = 503, message = "Too many requests waiting, retry later") })
+	public DeferredResult<ResponseEntity<byte[]>> generatePdfAsync(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream json)
+			throws PdfGeneratorException {
+
+		final PdfRenderOptions options = options(template, parameters);
+		final JsonNode jsonNode = readJson(json);
+
+		final DeferredResult<ResponseEntity<byte[]>> result = new DeferredResult<>();
+		pdfRenderExecutor.generatePdfStream(options, jsonNode).whenComplete((bytes, error) -> {
+			if (error == null) {
+				result.setResult(new ResponseEntity<>(bytes, HttpStatus.OK));
+			} else {
+				result.setErrorResult(error instanceof CompletionException ? error.getCause() : error);
+			}
+		});
+		return result;
+	}
+
+	@RequestMapping(value = "generatePdfFromStream", method = RequestMethod.POST)
+	@ApiOperation(value = "Generate PDF bytes from a streamed json", notes = "This endpoint generates a PDF in bytes, "
+			+ "writing each question and answer as it is read from the request body")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "PDF bytes generated successfully"),
+			@ApiResponse(code = 400, message = "Invalid Json format or layout provided"),
+			@ApiResponse(code = 404, message = "Unknown template requested"),
+			@ApiResponse(code = 413, message = "Json larger than allowed"),
+			@ApiResponse(code = 500, message = "Error while processing the request") })
+	public ResponseEntity<byte[]> generatePdfFromStream(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream json)
+			throws PdfGeneratorException {
+
+		final PdfRenderOptions options = options(template, parameters);
+
+		final byte[] bytes = pdfGeneratorProcessor.generatePdfStream(options, limit(json));
+		return new ResponseEntity<>(bytes, HttpStatus.OK);
+	}
+
+	@RequestMapping(value = "streamPdf", method = RequestMethod.POST)
+	@ApiOperation(value = "Stream PDF bytes", notes = "This endpoint generates a PDF and writes it straight to the "
+			+ "response as it is saved, without holding a copy of the whole PDF in memory")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "PDF bytes generated successfully"),
+			@ApiResponse(code = 400, message = "Invalid Json format or layout provided"),
+			@ApiResponse(code = 404, message = "Unknown template requested"),
+			@ApiResponse(code = 413, message = "Json larger than allowed"),
+			@ApiResponse(code = 500, message = "Error while processing the request") })
+	public ResponseEntity<StreamingResponseBody> streamPdf(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream json)
+			throws PdfGeneratorException {
+
+		final PdfRenderOptions options = options(template, parameters);
+		final JsonNode jsonNode = readJson(json);
+		// unknown templates are refused before the response is committed
+		pdfTemplateRegistry.get(template);
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(output -> {
+			try {
+				pdfGeneratorProcessor.generatePdf(options, jsonNode, output);
+			} catch (final PdfGeneratorException e) {
+				throw new IOException(e);
+			}
+		});
+	}
+
+	@RequestMapping(value = "generatePdfBatch", method = RequestMethod.POST)
+	@ApiOperation(value = "Generate a zip of PDFs", notes = "This endpoint generates a PDF for each claim in a json "
+			+ "array or newline delimited json stream, returning a zip of the PDFs with a manifest.json giving the "
+			+ "status of each claim")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "Batch processed, see manifest.json for each claim"),
+			@ApiResponse(code = 400, message = "Invalid layout provided"),
+			@ApiResponse(code = 500, message = "Error while processing the request") })
+	public ResponseEntity<StreamingResponseBody> generatePdfBatch(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream claims)
+			throws InvalidLayoutException {
+
+		final PdfRenderOptions options = options(template, parameters);
+
+		return ResponseEntity.ok().contentType(APPLICATION_ZIP).body(output -> {
+			try {
+				pdfBatchProcessor.generatePdfBatch(options, limit(claims), output);
+			} catch (final PdfGeneratorException e) {
+				throw new IOException(e);
+			}
+		});
+	}
+
+	@RequestMapping(value = "generatePdfBundle", method = RequestMethod.POST)
+	@ApiOperation(value = "Generate one PDF of many claims", notes = "This endpoint generates a single PDF of every "
+			+ "claim in a json array or newline delimited json stream, each starting on a new page with a bookmark, "
+			+ "for printing in one run")
+	@ApiResponses(value = { @ApiResponse(code = 200, message = "PDF bytes generated successfully"),
+			@ApiResponse(code = 400, message = "Invalid layout provided"),
+			@ApiResponse(code = 404, message = "Unknown template requested"),
+			@ApiResponse(code = 500, message = "Error while processing the request") })
+	public ResponseEntity<StreamingResponseBody> generatePdfBundle(
+			@RequestParam(value = "template", required = false) final String template,
+			@RequestParam final Map<String, String> parameters, final InputStream claims)
+			throws PdfGeneratorException {
+
+		final PdfRenderOptions options = options(template, parameters);
+		// unknown templates are refused before the response is committed
+		pdfTemplateRegistry.get(template);
+
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_OCTET_STREAM).body(output -> {
+			try {
+				pdfGeneratorProcessor.generatePdfBundle(options, limit(claims), output);
+			} catch (final PdfGeneratorException e) {
+				throw new IOException(e);
+			}
+		});
+	}
 }
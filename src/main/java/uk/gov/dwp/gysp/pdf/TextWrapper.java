@@ -0,0 +1,97 @@
+package uk.gov.dwp.gysp.pdf;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Breaks text into lines that fit a width, measured with the cached glyph widths of a font. Lines are broken at spaces
+ * where possible, and within a word only when the word is wider than a line on its own. Line breaks in the text are
+ * kept.
+ */
+public final class TextWrapper {
+
+	private static final Pattern LINE_BREAK = Pattern.compile("\r\n|\r|\n");
+	private static final char SPACE = ' ';
+
+	private final float maxWidth;
+	private final PdfFontMetrics metrics;
+
+	/**
+	 * @param width
+	 *            the width of a line at the font size, in user space units
+	 */
+	public TextWrapper(final PdfFontMetrics metrics, final float fontSize, final float width) {
+		this.metrics = metrics;
+		this.maxWidth = width * 1000f / fontSize;
+	}
+
+	public List<String> wrap(final String text) {
+		if (text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+			if (this.metrics.getStringWidth(text) <= this.maxWidth) {
+				return Collections.singletonList(text);
+			}
+			final List<String> lines = new ArrayList<>();
+			wrapParagraph(text, lines);
+			return lines;
+		}
+		final List<String> lines = new ArrayList<>();
+		for (final String paragraph : LINE_BREAK.split(text, -1)) {
+			wrapParagraph(paragraph, lines);
+		}
+		return lines;
+	}
+
+	private void breakWord(final String word, final List<String> lines, final StringBuilder line) {
+		float width = 0;
+		int start = 0;
+		for (int index = 0; index < word.length();) {
+			final int codePoint = word.codePointAt(index);
+			final float glyphWidth = this.metrics.getWidth(codePoint);
+			if (width + glyphWidth > this.maxWidth && index > start) {
+				lines.add(word.substring(start, index));
+				start = index;
+				width = 0;
+			}
+			width += glyphWidth;
+			index += Character.charCount(codePoint);
+		}
+		line.append(word, start, word.length());
+	}
+
+	private void wrapParagraph(final String paragraph, final List<String> lines) {
+		final float spaceWidth = this.metrics.getWidth(SPACE);
+		final StringBuilder line = new StringBuilder();
+		float lineWidth = 0;
+		int start = 0;
+		boolean firstWord = true;
+		while (start <= paragraph.length()) {
+			int end = paragraph.indexOf(SPACE, start);
+			if (end < 0) {
+				end = paragraph.length();
+			}
+			final String word = paragraph.substring(start, end);
+			final float wordWidth = this.metrics.getStringWidth(word);
+			if (firstWord) {
+				lineWidth = wordWidth;
+			} else if (lineWidth + spaceWidth + wordWidth <= this.maxWidth) {
+				line.append(SPACE);
+				lineWidth += spaceWidth + wordWidth;
+			} else {
+				lines.add(line.toString());
+				line.setLength(0);
+				lineWidth = wordWidth;
+			}
+			if (wordWidth > this.maxWidth) {
+				breakWord(word, lines, line);
+				lineWidth = this.metrics.getStringWidth(line.toString());
+			} else {
+				line.append(word);
+			}
+			firstWord = false;
+			start = end + 1;
+		}
+		lines.add(line.toString());
+	}
+}
@@ -0,0 +1,10 @@
+package uk.gov.dwp.gysp.pdf;
+
+public class UnknownTemplateException extends PdfGeneratorException {
+
+	private static final long serialVersionUID = 3075417245398870126L;
+
+	public UnknownTemplateException(String message) {
+		super(message);
+	}
+}
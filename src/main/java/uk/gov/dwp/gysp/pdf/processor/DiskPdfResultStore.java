@@ -0,0 +1,126 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps generated PDFs as files in a local directory, one per key, so they survive a restart. Once the files' total
+ * size passes a limit the least recently used are deleted. The size of each file is kept by key, and a file is only
+ * replaced or deleted while its key's entry is being updated, so concurrent writes of one key count it once.
+ */
+public class DiskPdfResultStore implements PdfResultStore {
+
+	private static final String SUFFIX = ".pdf";
+
+	private final Path directory;
+	private final ConcurrentMap<String, Long> lengths = new ConcurrentHashMap<>();
+	private final long maxBytes;
+	private final Runnable onEviction;
+	private final AtomicLong size = new AtomicLong();
+
+	public DiskPdfResultStore(final Path directory, final long maxBytes, final Runnable onEviction)
+			throws IOException {
+		this.directory = Files.createDirectories(directory);
+		this.maxBytes = maxBytes;
+		this.onEviction = onEviction;
+		for (final Path file : files()) {
+			final long length = Files.size(file);
+			this.lengths.put(key(file), length);
+			this.size.addAndGet(length);
+		}
+	}
+
+	@Override
+	public byte[] get(final String key) throws IOException {
+		final Path file = this.directory.resolve(key + SUFFIX);
+		try {
+			final byte[] pdf = Files.readAllBytes(file);
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return pdf;
+		} catch (final NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public void put(final String key, final byte[] pdf) throws IOException {
+		final Path file = this.directory.resolve(key + SUFFIX);
+		final Path temp = Files.createTempFile(this.directory, key, ".tmp");
+		try {
+			Files.write(temp, pdf);
+			this.lengths.compute(key, (ignored, replaced) -> {
+				try {
+					Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				this.size.addAndGet(pdf.length - (replaced == null ? 0 : replaced));
+				return (long) pdf.length;
+			});
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		if (this.size.get() > this.maxBytes) {
+			evict();
+		}
+	}
+
+	private synchronized void evict() throws IOException {
+		final List<Path> files = files();
+		files.sort(Comparator.comparing(DiskPdfResultStore::lastModified));
+		for (final Path file : files) {
+			if (this.size.get() <= this.maxBytes) {
+				return;
+			}
+			try {
+				this.lengths.computeIfPresent(key(file), (ignored, length) -> {
+					try {
+						Files.deleteIfExists(file);
+					} catch (final IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					this.size.addAndGet(-length);
+					this.onEviction.run();
+					return null;
+				});
+			} catch (final UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+
+	private List<Path> files() throws IOException {
+		final List<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SUFFIX)) {
+			stream.forEach(files::add);
+		}
+		return files;
+	}
+
+	private static String key(final Path file) {
+		final String name = file.getFileName().toString();
+		return name.substring(0, name.length() - SUFFIX.length());
+	}
+
+	private static FileTime lastModified(final Path file) {
+		try {
+			return Files.getLastModifiedTime(file);
+		} catch (final IOException e) {
+			return FileTime.fromMillis(0);
+		}
+	}
+}
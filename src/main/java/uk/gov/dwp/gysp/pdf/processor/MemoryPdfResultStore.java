@@ -0,0 +1,39 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps generated PDFs on the heap, evicting the least recently used once their total size reaches a limit.
+ */
+public class MemoryPdfResultStore implements PdfResultStore {
+
+	private final Map<String, byte[]> cache = new LinkedHashMap<>(16, 0.75f, true);
+	private final long maxBytes;
+	private final Runnable onEviction;
+	private long size;
+
+	public MemoryPdfResultStore(final long maxBytes, final Runnable onEviction) {
+		this.maxBytes = maxBytes;
+		this.onEviction = onEviction;
+	}
+
+	@Override
+	public synchronized byte[] get(final String key) {
+		return this.cache.get(key);
+	}
+
+	@Override
+	public synchronized void put(final String key, final byte[] pdf) {
+		final byte[] replaced = this.cache.put(key, pdf);
+		this.size += pdf.length - (replaced == null ? 0 : replaced.length);
+		// in access order, so the least recently used come first
+		final Iterator<byte[]> iterator = this.cache.values().iterator();
+		while (this.size > this.maxBytes && iterator.hasNext()) {
+			this.size -= iterator.next().length;
+			iterator.remove();
+			this.onEviction.run();
+		}
+	}
+}
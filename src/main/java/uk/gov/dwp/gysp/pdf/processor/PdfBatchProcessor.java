@@ -0,0 +1,254 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.LimitedInputStream;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorBusyException;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.PdfSpan;
+import uk.gov.dwp.gysp.pdf.UnknownTemplateException;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Generates a PDF for each claim in a json array or newline delimited json stream, rendering them concurrently on a
+ * fixed pool of workers shared by every batch, with a bounded queue of waiting claims. The results are written as a zip
+ * in input order: a {@code claim-<index>.pdf} entry for each claim that was generated, a {@code claim-<index>.error}
+ * entry for each claim that was not, and finally a {@code manifest.json} listing the status of every claim. A claim
+ * read while the queue is full is not generated, and is given a status of 503.
+ */
+@Component
+public class PdfBatchProcessor {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfBatchProcessor.class);
+
+	private static final String MANIFEST = "manifest.json";
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final String QUEUE_FULL = "Too many pdfs waiting to be generated";
+
+	private final ThreadPoolExecutor executor;
+	private final PdfGeneratorProcessor pdfGeneratorProcessor;
+	private final int window;
+
+	@Autowired
+	public PdfBatchProcessor(final PdfGeneratorProcessor pdfGeneratorProcessor,
+			@Value("${pdf.batch.threads:0}") final int threads, @Value("${pdf.batch.queue:100}") final int queue) {
+		this.pdfGeneratorProcessor = pdfGeneratorProcessor;
+		final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue), new WorkerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+		this.window = poolSize * 2;
+	}
+
+	private static String entryName(final int index, final String extension) {
+		return String.format("claim-%05d.%s", index, extension);
+	}
+
+	private static void writeEntry(final ZipOutputStream zip, final String name, final byte[] bytes)
+			throws IOException {
+		// pdf content is already compressed, so store entries rather than deflating them again
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		final ZipEntry entry = new ZipEntry(name);
+		entry.setMethod(ZipEntry.STORED);
+		entry.setSize(bytes.length);
+		entry.setCompressedSize(bytes.length);
+		entry.setCrc(crc.getValue());
+		zip.putNextEntry(entry);
+		zip.write(bytes);
+		zip.closeEntry();
+	}
+
+	public void generatePdfBatch(final PdfRenderOptions options, final InputStream claims, final OutputStream output)
+			throws PdfGeneratorException {
+		final ZipOutputStream zip = new ZipOutputStream(output);
+		final Deque<Future<BatchItem>> pending = new ArrayDeque<>();
+		final ExecutorService executor = PdfSpan.inTrace(this.executor);
+		int index = 0;
+		try {
+			final ManifestWriter manifest = new ManifestWriter();
+			// the rest of the input cannot be read reliably after an error, so the batch is finished with what has
+			// been read and the claim that could not be read
+			BatchItem unread = null;
+			try (MappingIterator<JsonNode> iterator = this.pdfGeneratorProcessor.getClaimReader().readValues(claims)) {
+				while (iterator.hasNextValue()) {
+					final JsonNode claim = iterator.nextValue();
+					LimitedInputStream.restart(claims);
+					final int claimIndex = index++;
+					try {
+						pending.add(executor.submit(() -> generate(claimIndex, options, claim)));
+					} catch (final RejectedExecutionException e) {
+						pending.add(CompletableFuture.completedFuture(BatchItem.failed(claimIndex, 503, QUEUE_FULL)));
+					}
+					if (pending.size() >= this.window) {
+						write(zip, manifest, pending.removeFirst());
+					}
+				}
+			} catch (final JsonProcessingException e) {
+				LOGGER.error("Error reading batch json at claim {}", index, e);
+				unread = BatchItem.failed(index, 400, e.getOriginalMessage());
+			} catch (final LimitedInputStream.LimitExceededException e) {
+				LOGGER.error("Refusing batch json at claim {}: {}", index, e.getMessage());
+				unread = BatchItem.failed(index, 413, e.getMessage());
+			}
+			while (!pending.isEmpty()) {
+				write(zip, manifest, pending.removeFirst());
+			}
+			if (unread != null) {
+				write(zip, manifest, unread);
+			}
+			writeEntry(zip, MANIFEST, manifest.finish());
+			zip.finish();
+		} catch (final IOException e) {
+			throw new PdfGeneratorException("Unable to generate pdf batch", e);
+		} finally {
+			for (final Future<BatchItem> future : pending) {
+				future.cancel(true);
+			}
+		}
+	}
+
+	/**
+	 * The number of claims waiting for a worker.
+	 */
+	int getQueuedClaims() {
+		return this.executor.getQueue().size();
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	private BatchItem generate(final int index, final PdfRenderOptions options, final JsonNode claim) {
+		try {
+			return BatchItem.generated(index, this.pdfGeneratorProcessor.generatePdfStream(options, claim));
+		} catch (final IllegalArgumentException e) {
+			return BatchItem.failed(index, 400, e.getMessage());
+		} catch (final UnknownTemplateException e) {
+			return BatchItem.failed(index, 404, e.getMessage());
+		} catch (final PdfGeneratorBusyException e) {
+			return BatchItem.failed(index, 503, e.getMessage());
+		} catch (final PdfGeneratorException | RuntimeException e) {
+			LOGGER.error("Error generating pdf for batch claim {}", index, e);
+			return BatchItem.failed(index, 500, e.getMessage());
+		}
+	}
+
+	private void write(final ZipOutputStream zip, final ManifestWriter manifest, final Future<BatchItem> future)
+			throws IOException {
+		try {
+			write(zip, manifest, future.get());
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while generating pdf batch", e);
+		} catch (final ExecutionException e) {
+			throw new IOException("Unable to generate pdf batch", e.getCause());
+		}
+	}
+
+	private void write(final ZipOutputStream zip, final ManifestWriter manifest, final BatchItem item)
+			throws IOException {
+		final String name;
+		if (item.pdf != null) {
+			name = entryName(item.index, "pdf");
+			writeEntry(zip, name, item.pdf);
+		} else {
+			name = entryName(item.index, "error");
+			writeEntry(zip, name, String.valueOf(item.message).getBytes(StandardCharsets.UTF_8));
+		}
+		manifest.add(item, name);
+		zip.flush();
+	}
+
+	private static final class BatchItem {
+
+		private final int index;
+		private final String message;
+		private final byte[] pdf;
+		private final int status;
+
+		private BatchItem(final int index, final int status, final byte[] pdf, final String message) {
+			this.index = index;
+			this.status = status;
+			this.pdf = pdf;
+			this.message = message;
+		}
+
+		private static BatchItem failed(final int index, final int status, final String message) {
+			return new BatchItem(index, status, null, message);
+		}
+
+		private static BatchItem generated(final int index, final byte[] pdf) {
+			return new BatchItem(index, 200, pdf, null);
+		}
+	}
+
+	private static final class ManifestWriter {
+
+		private final JsonGenerator generator;
+		private final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+
+		private ManifestWriter() throws IOException {
+			this.generator = OBJECT_MAPPER.getFactory().createGenerator(this.stream);
+			this.generator.writeStartArray();
+		}
+
+		private void add(final BatchItem item, final String name) throws IOException {
+			this.generator.writeStartObject();
+			this.generator.writeNumberField("index", item.index);
+			this.generator.writeNumberField("status", item.status);
+			this.generator.writeStringField("file", name);
+			if (item.message != null) {
+				this.generator.writeStringField("message", item.message);
+			}
+			this.generator.writeEndObject();
+		}
+
+		private byte[] finish() throws IOException {
+			this.generator.writeEndArray();
+			this.generator.close();
+			return this.stream.toByteArray();
+		}
+	}
+
+	private static final class WorkerThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "pdf-batch-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import org.apache.pdfbox.filter.Filter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.zip.Deflater;
+
+/**
+ * The deflate level PDFBox compresses content streams and embedded fonts with, from {@code pdf.output.deflate-level}:
+ * 0 (none) to 9 (smallest). PDFBox reads the level from a system property each time it compresses a stream, so the
+ * level is not held by any processor or application context: once set it applies to every PDF written anywhere in
+ * the JVM until the process ends. It is therefore set once, as the application starts, and only if it is not -1, the
+ * default, which leaves the property, and PDFBox's own default level, untouched.
+ */
+public final class PdfDeflateLevel {
+
+	public static final String PROPERTY = "pdf.output.deflate-level";
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfDeflateLevel.class);
+
+	private PdfDeflateLevel() {
+	}
+
+	/**
+	 * Sets the level for the whole process, unless it is the default or already set.
+	 */
+	public static void apply(final int level) {
+		if (level == Deflater.DEFAULT_COMPRESSION
+				|| Integer.toString(level).equals(System.getProperty(Filter.SYSPROP_DEFLATELEVEL))) {
+			return;
+		}
+		if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			final String message = PROPERTY + " must be between 0 and 9, or -1 for the default, not " + level;
+			LOGGER.error(message);
+			throw new IllegalArgumentException(message);
+		}
+		LOGGER.info("Compressing pdf streams at deflate level {} for the whole process", level);
+		System.setProperty(Filter.SYSPROP_DEFLATELEVEL, Integer.toString(level));
+	}
+}
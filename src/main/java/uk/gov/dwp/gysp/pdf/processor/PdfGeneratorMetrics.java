@@ -0,0 +1,136 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.InvalidJsonException;
+
+import java.io.IOException;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Timings and sizes of each PDF generated, published through the actuator. Every meter is tagged with the
+ * {@code input} the claim was read from ({@code tree} for a parsed {@code JsonNode}, {@code stream} for streamed
+ * json); the total time is also tagged with a bucket of the page count, so the cost of long claims can be told apart
+ * from short ones.
+ */
+@Component
+public class PdfGeneratorMetrics {
+
+	static final String INPUT_BUNDLE = "bundle";
+	static final String INPUT_STREAM = "stream";
+	static final String INPUT_TREE = "tree";
+
+	private static final String CAUSE = "cause";
+	private static final String INPUT = "input";
+	private static final String PAGES = "pages";
+
+	private final MeterRegistry registry;
+
+	public PdfGeneratorMetrics(final MeterRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Metrics recorded to the global registry, for a processor created outside of Spring.
+	 */
+	public static PdfGeneratorMetrics global() {
+		return GlobalMetricsHolder.INSTANCE;
+	}
+
+	private static String failureCause(final Throwable e) {
+		if (e instanceof InvalidJsonException) {
+			return "invalid_json";
+		}
+		if (e instanceof IllegalArgumentException) {
+			return "unsupported_node";
+		}
+		if (e instanceof IOException || e.getCause() instanceof IOException) {
+			return "io_error";
+		}
+		return "other";
+	}
+
+	private static String pageBucket(final int pages) {
+		if (pages <= 1) {
+			return "1";
+		}
+		if (pages <= 5) {
+			return "2-5";
+		}
+		if (pages <= 10) {
+			return "6-10";
+		}
+		return "11+";
+	}
+
+	public Timer.Sample start() {
+		return Timer.start(this.registry);
+	}
+
+	public void recordParse(final Timer.Sample sample) {
+		sample.stop(timer("pdf.json.parse", "Time to parse a claim's json", INPUT, INPUT_TREE));
+	}
+
+	public void recordInvalidJson(final InvalidJsonException e) {
+		recordFailure(INPUT_TREE, e);
+	}
+
+	void recordFailure(final String input, final Throwable e) {
+		Counter.builder("pdf.generate.failures").description("Claims that could not be generated")
+				.tags(INPUT, input, CAUSE, failureCause(e)).register(this.registry).increment();
+	}
+
+	void recordGenerated(final Timer.Sample total, final String input, final int pages, final int fields,
+			final long bytes) {
+		total.stop(timer("pdf.generate.total", "Time to generate a claim's pdf, from json to the last byte written",
+				INPUT, input, PAGES, pageBucket(pages)));
+		summary("pdf.generate.pages", "Pages in each pdf", null, input).record(pages);
+		summary("pdf.generate.fields", "Questions and answers in each claim", null, input).record(fields);
+		summary("pdf.generate.output", "Size of each pdf", "bytes", input).record(bytes);
+	}
+
+	void recordMemoryRefused() {
+		Counter.builder("pdf.memory.refused").description("Claims refused as the memory budget was spent")
+				.register(this.registry).increment();
+	}
+
+	void recordMemorySpill() {
+		Counter.builder("pdf.memory.spills").description("Pdfs whose stream data spilled to a scratch file")
+				.register(this.registry).increment();
+	}
+
+	<T> void registerMemoryAvailable(final T budget, final ToDoubleFunction<T> available) {
+		Gauge.builder("pdf.memory.available", budget, available).description("Memory budget left for new pdfs")
+				.baseUnit("bytes").register(this.registry);
+	}
+
+	void recordLayout(final Timer.Sample sample, final String input) {
+		sample.stop(timer("pdf.generate.layout", "Time to copy the template and lay out a claim's questions and answers",
+				INPUT, input));
+	}
+
+	void recordSave(final Timer.Sample sample, final String input) {
+		sample.stop(timer("pdf.generate.save", "Time to save a generated pdf", INPUT, input));
+	}
+
+	private DistributionSummary summary(final String name, final String description, final String baseUnit,
+			final String input) {
+		return DistributionSummary.builder(name).description(description).baseUnit(baseUnit).tags(INPUT, input)
+				.publishPercentileHistogram().register(this.registry);
+	}
+
+	private Timer timer(final String name, final String description, final String... tags) {
+		return Timer.builder(name).description(description).tags(tags).publishPercentileHistogram()
+				.register(this.registry);
+	}
+
+	private static final class GlobalMetricsHolder {
+
+		private static final PdfGeneratorMetrics INSTANCE = new PdfGeneratorMetrics(Metrics.globalRegistry);
+	}
+}
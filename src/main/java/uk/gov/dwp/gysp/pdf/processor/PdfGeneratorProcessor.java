@@ -1,26 +1,489 @@
 package uk.gov.dwp.gysp.pdf.processor;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.micrometer.core.instrument.Timer;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.DigestFormReader;
+import uk.gov.dwp.gysp.pdf.FormReader;
+import uk.gov.dwp.gysp.pdf.InvalidJsonException;
+import uk.gov.dwp.gysp.pdf.JsonNodeFormReader;
+import uk.gov.dwp.gysp.pdf.JsonStreamFormReader;
+import uk.gov.dwp.gysp.pdf.JsonTooLargeException;
+import uk.gov.dwp.gysp.pdf.LimitedInputStream;
+import uk.gov.dwp.gysp.pdf.PdfAConformance;
+import uk.gov.dwp.gysp.pdf.PdfBundle;
+import uk.gov.dwp.gysp.pdf.PdfEstimate;
+import uk.gov.dwp.gysp.pdf.PdfFontCache;
 import uk.gov.dwp.gysp.pdf.PdfGenerator;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorBusyException;
 import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.PdfLayout;
+import uk.gov.dwp.gysp.pdf.PdfLayoutSettings;
+import uk.gov.dwp.gysp.pdf.PdfSpan;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 @Component
 public class PdfGeneratorProcessor {
 
+	private static final int DOCUMENT_ID_LENGTH = 16;
+	// most claims fit in a couple of pages, which saves to around 16KB
+	private static final int INITIAL_PDF_SIZE = 32 * 1024;
+	private static final String UNABLE_TO_ESTIMATE_PDF_DOCUMENT = "Unable to estimate pdf document";
+	private static final String INVALID_JSON = "Unable to read json";
+	private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper();
+	private static final SecureRandom RANDOM = new SecureRandom();
+	private static final String PDF_A_KEY = ":pdfa";
+	private static final int MAX_POOLED_SAVE_BUFFERS = 64;
+	private static final int SAVE_BUFFER_SIZE = 16 * 1024;
 	private static final String UNABLE_TO_GENERATE_PDF_DOCUMENT = "Unable to generate pdf document";
 
-	public byte[] generatePdfStream(final JsonNode json) throws PdfGeneratorException {
-		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
-		try (PDDocument document = new PdfGenerator(json).generate()) {
-			document.save(stream);
+	private ObjectReader claimReader = claimReader(DEFAULT_OBJECT_MAPPER);
+	private final boolean deterministic;
+	private final PdfFontCache fonts;
+	private JsonFactory jsonFactory = jsonFactory(DEFAULT_OBJECT_MAPPER);
+	private final PdfLayoutSettings layout;
+	private final PdfMemoryBudget memoryBudget;
+	private final PdfGeneratorMetrics metrics;
+	private final PdfPageRenderPool pageRenderPool;
+	private final boolean pdfA;
+	private final PdfResultCache resultCache;
+	private final PdfTemplateRegistry templates;
+
+	/**
+	 * A processor with the default template, fonts and layout, and nothing cached or bounded, for use outside Spring.
+	 */
+	public PdfGeneratorProcessor() {
+		this(PdfGeneratorMetrics.global(), PdfResultCache.disabled(), PdfMemoryBudget.unlimited(),
+				PdfPageRenderPool.disabled(), PdfTemplateRegistry.of(PdfTemplate.getDefault()),
+				PdfLayoutSettings.getDefault(), true, false);
+	}
+
+	/**
+	 * A processor writing PDFs that are the same for the same claim if {@code deterministic} is set, and that conform
+	 * to PDF/A-1b if {@code pdfA} is set, laying out claims with the given settings unless a request overrides them.
+	 */
+	@Autowired
+	public PdfGeneratorProcessor(final PdfGeneratorMetrics metrics, final PdfResultCache resultCache,
+			final PdfMemoryBudget memoryBudget, final PdfPageRenderPool pageRenderPool,
+			final PdfTemplateRegistry templates, final PdfLayoutSettings layout,
+			@Value("${pdf.output.deterministic:true}") final boolean deterministic,
+			@Value("${pdf.output.pdfa:false}") final boolean pdfA) {
+		this.templates = templates;
+		this.layout = layout;
+		this.fonts = PdfFontCache.getDefault();
+		this.metrics = metrics;
+		this.resultCache = resultCache;
+		this.memoryBudget = memoryBudget;
+		this.pageRenderPool = pageRenderPool;
+		this.deterministic = deterministic;
+		this.pdfA = pdfA;
+	}
+
+	/**
+	 * Reads a json tree of each claim, rejecting duplicated fields, which would otherwise silently lose all but the
+	 * last of their answers, and leaving the claim out of parse error messages.
+	 */
+	private static ObjectReader claimReader(final ObjectMapper objectMapper) {
+		return objectMapper.readerFor(JsonNode.class).with(DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY)
+				.without(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION);
+	}
+
+	/**
+	 * Creates parsers for claims streamed as they are generated, with the same checks as the claim reader.
+	 */
+	private static JsonFactory jsonFactory(final ObjectMapper objectMapper) {
+		return objectMapper.getFactory().copy().enable(JsonParser.Feature.STRICT_DUPLICATE_DETECTION)
+				.disable(JsonParser.Feature.INCLUDE_SOURCE_IN_LOCATION);
+	}
+
+	/**
+	 * Lays out the claim to find its page count and approximate size, without creating a document.
+	 */
+	public PdfEstimate estimate(final PdfRenderOptions options, final JsonNode json) throws PdfGeneratorException {
+		final PdfTemplate template = this.templates.get(options.getTemplateId()).getTemplate();
+		try (PdfSpan span = PdfSpan.start(PdfSpan.LAYOUT)) {
+			final PdfLayout layout = PdfLayout.compile(new JsonNodeFormReader(json), template, this.fonts,
+					settings(options));
+			span.tag(PdfSpan.PAGES_TAG, layout.getPageCount());
+			return PdfEstimate.of(layout);
+		} catch (final IOException e) {
+			throw new PdfGeneratorException(UNABLE_TO_ESTIMATE_PDF_DOCUMENT, e);
+		}
+	}
+
+	/**
+	 * Generates the claim as it is read, without building a tree of the whole claim first.
+	 */
+	public void generatePdf(final PdfRenderOptions options, final InputStream json, final OutputStream output)
+			throws PdfGeneratorException {
+		final PdfTemplateRegistry.RegisteredTemplate template = this.templates.get(options.getTemplateId());
+		try (JsonParser parser = this.jsonFactory.createParser(json)) {
+			generatePdf(new JsonStreamFormReader(parser), template, settings(options),
+					PdfGeneratorMetrics.INPUT_STREAM, true, output);
+		} catch (final LimitedInputStream.LimitExceededException e) {
+			final InvalidJsonException tooLarge = new JsonTooLargeException(INVALID_JSON, e);
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_STREAM, tooLarge);
+			throw tooLarge;
+		} catch (final JsonProcessingException e) {
+			final InvalidJsonException invalidJson = new InvalidJsonException(INVALID_JSON, e);
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_STREAM, invalidJson);
+			throw invalidJson;
+		} catch (final IOException e) {
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_STREAM, e);
+			throw new PdfGeneratorException(UNABLE_TO_GENERATE_PDF_DOCUMENT, e);
+		}
+	}
+
+	public void generatePdf(final PdfRenderOptions options, final JsonNode json, final OutputStream output)
+			throws PdfGeneratorException {
+		render(this.templates.get(options.getTemplateId()), settings(options), json, output);
+	}
+
+	/**
+	 * Generates one PDF of every claim in a json array or newline delimited json stream, for printing in a single run.
+	 * Each claim starts on a new page with a bookmark, and the claims are read, laid out and written to the document
+	 * one at a time, sharing its template and fonts.
+	 */
+	public void generatePdfBundle(final PdfRenderOptions options, final InputStream claims, final OutputStream output)
+			throws PdfGeneratorException {
+		final PdfLayoutSettings layoutSettings = settings(options);
+		final PdfTemplateRegistry.RegisteredTemplate registered = this.templates.get(options.getTemplateId());
+		final PdfTemplate template = registered.getTemplate();
+		final Timer.Sample total = this.metrics.start();
+		final SaveOutputStream saveOutput = new SaveOutputStream(output);
+		final MessageDigest digest = sha256();
+		int fields = 0;
+		try (PdfMemoryBudget.Allocation allocation = this.memoryBudget.allocate();
+				PdfBundle bundle = new PdfBundle(template, this.fonts, allocation.getMemoryUsageSetting());
+				MappingIterator<JsonNode> iterator = this.claimReader.readValues(claims)) {
+			final Timer.Sample layout = this.metrics.start();
+			try (PdfSpan span = PdfSpan.start(PdfSpan.LAYOUT)) {
+				while (iterator.hasNextValue()) {
+					final DigestFormReader reader = new DigestFormReader(
+							new JsonNodeFormReader(iterator.nextValue()), layoutSettings);
+					LimitedInputStream.restart(claims);
+					bundle.add("Claim " + (bundle.getClaimCount() + 1),
+							PdfLayout.compile(reader, template, this.fonts, layoutSettings));
+					digest.update(reader.getDigest());
+					fields += reader.getFieldCount();
+				}
+				span.tag(PdfSpan.CLAIMS_TAG, bundle.getClaimCount()).tag(PdfSpan.FIELDS_TAG, fields)
+						.tag(PdfSpan.PAGES_TAG, bundle.getDocument().getNumberOfPages());
+			}
+			this.metrics.recordLayout(layout, PdfGeneratorMetrics.INPUT_BUNDLE);
+			final PDDocument document = bundle.getDocument();
+			setDocumentId(document, registered, layoutSettings, digest.digest());
+			if (this.pdfA) {
+				PdfAConformance.apply(document);
+			}
+			save(document, saveOutput, PdfGeneratorMetrics.INPUT_BUNDLE);
+			this.metrics.recordGenerated(total, PdfGeneratorMetrics.INPUT_BUNDLE, document.getNumberOfPages(), fields,
+					saveOutput.count);
+			allocation.checkSpilled();
+		} catch (final LimitedInputStream.LimitExceededException e) {
+			final InvalidJsonException tooLarge = new JsonTooLargeException(INVALID_JSON, e);
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_BUNDLE, tooLarge);
+			throw tooLarge;
+		} catch (final JsonProcessingException e) {
+			final InvalidJsonException invalidJson = new InvalidJsonException(INVALID_JSON, e);
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_BUNDLE, invalidJson);
+			throw invalidJson;
 		} catch (final IOException e) {
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_BUNDLE, e);
 			throw new PdfGeneratorException(UNABLE_TO_GENERATE_PDF_DOCUMENT, e);
+		} catch (final RuntimeException e) {
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_BUNDLE, e);
+			throw e;
+		}
+	}
+
+	public byte[] generatePdfStream(final JsonNode json) throws PdfGeneratorException {
+		return generatePdfStream(PdfRenderOptions.defaults(), json);
+	}
+
+	/**
+	 * Generates the claim, returning a cached PDF if there is one generated from the same template, as it is now, and
+	 * laid out the same way. PDFs written as PDF/A are cached apart from others. Output that is not deterministic is
+	 * never cached, since each PDF must have its own id and date.
+	 */
+	public byte[] generatePdfStream(final PdfRenderOptions options, final JsonNode json) throws PdfGeneratorException {
+		final PdfTemplateRegistry.RegisteredTemplate template = this.templates.get(options.getTemplateId());
+		final PdfLayoutSettings layoutSettings = settings(options);
+		if (!this.deterministic) {
+			final ByteArrayOutputStream stream = new ByteArrayOutputStream(INITIAL_PDF_SIZE);
+			render(template, layoutSettings, json, stream);
+			return stream.toByteArray();
+		}
+		final StringBuilder key = new StringBuilder(template.getKey());
+		if (!layoutSettings.equals(PdfLayoutSettings.getDefault())) {
+			key.append(':').append(layoutSettings.getKey());
 		}
+		if (this.pdfA) {
+			key.append(PDF_A_KEY);
+		}
+		return this.resultCache.get(key.toString(), json, () -> {
+			final ByteArrayOutputStream stream = new ByteArrayOutputStream(INITIAL_PDF_SIZE);
+			render(template, layoutSettings, json, stream);
+			return stream.toByteArray();
+		});
+	}
+
+	/**
+	 * Generates the claim as it is read, without building a tree of the whole claim first. Claims read this way are
+	 * never cached.
+	 */
+	public byte[] generatePdfStream(final PdfRenderOptions options, final InputStream json)
+			throws PdfGeneratorException {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream(INITIAL_PDF_SIZE);
+		generatePdf(options, json, stream);
 		return stream.toByteArray();
 	}
+
+	/**
+	 * The reader claims are read with, whether one to a request or in a json array or newline delimited json stream.
+	 */
+	public ObjectReader getClaimReader() {
+		return this.claimReader;
+	}
+
+	/**
+	 * The settings this processor lays out claims with.
+	 */
+	public PdfLayoutSettings getLayoutSettings() {
+		return this.layout;
+	}
+
+	/**
+	 * Reads claims with the application's shared object mapper, for this processor and for the service controller.
+	 */
+	@Autowired(required = false)
+	public void setObjectMapper(final ObjectMapper objectMapper) {
+		this.claimReader = claimReader(objectMapper);
+		this.jsonFactory = jsonFactory(objectMapper);
+	}
+
+	private PDDocument render(final PdfGenerator generator, final DigestFormReader reader) throws IOException {
+		final PdfLayout pdfLayout;
+		try (PdfSpan span = PdfSpan.start(PdfSpan.LAYOUT)) {
+			pdfLayout = generator.layout();
+			span.tag(PdfSpan.FIELDS_TAG, reader.getFieldCount()).tag(PdfSpan.PAGES_TAG, pdfLayout.getPageCount());
+		}
+		return generator.render(pdfLayout, this.pageRenderPool.forLayout(pdfLayout));
+	}
+
+	private void render(final PdfTemplateRegistry.RegisteredTemplate template, final PdfLayoutSettings settings,
+			final JsonNode json, final OutputStream output) throws PdfGeneratorException {
+		try {
+			generatePdf(new JsonNodeFormReader(json), template, settings, PdfGeneratorMetrics.INPUT_TREE, false,
+					output);
+		} catch (final IOException e) {
+			this.metrics.recordFailure(PdfGeneratorMetrics.INPUT_TREE, e);
+			throw new PdfGeneratorException(UNABLE_TO_GENERATE_PDF_DOCUMENT, e);
+		}
+	}
+
+	private static PDDocument renderPages(final PdfGenerator generator, final DigestFormReader reader)
+			throws IOException {
+		try (PdfSpan span = PdfSpan.start(PdfSpan.LAYOUT)) {
+			final PDDocument document = generator.renderPages();
+			span.tag(PdfSpan.FIELDS_TAG, reader.getFieldCount()).tag(PdfSpan.PAGES_TAG, document.getNumberOfPages());
+			return document;
+		}
+	}
+
+	private void save(final PDDocument document, final SaveOutputStream output, final String input)
+			throws IOException {
+		final Timer.Sample save = this.metrics.start();
+		try (PdfSpan span = PdfSpan.start(PdfSpan.SAVE)) {
+			document.save(output);
+			span.tag(PdfSpan.PAGES_TAG, document.getNumberOfPages()).tag(PdfSpan.BYTES_TAG, output.count);
+		}
+		this.metrics.recordSave(save, input);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+	}
+
+	private PdfLayoutSettings settings(final PdfRenderOptions options) {
+		return options.getLayout() == null ? this.layout : options.getLayout();
+	}
+
+	/**
+	 * Identifies the document by its content when output is deterministic, so the same claim always gives the same
+	 * bytes, or else by a random id with the time it was generated. A claim generated from a template other than the
+	 * built in one, laid out other than by default or written as PDF/A is identified by those too, as it is cached.
+	 */
+	private void setDocumentId(final PDDocument document, final PdfTemplateRegistry.RegisteredTemplate template,
+			final PdfLayoutSettings settings, final byte[] digest) {
+		final byte[] id;
+		if (this.deterministic) {
+			final StringBuilder variant = new StringBuilder();
+			if (!template.isBuiltIn()) {
+				variant.append(template.getKey());
+			}
+			if (!settings.equals(PdfLayoutSettings.getDefault())) {
+				variant.append(':').append(settings.getKey());
+			}
+			if (this.pdfA) {
+				variant.append(PDF_A_KEY);
+			}
+			byte[] content = digest;
+			if (variant.length() > 0) {
+				final MessageDigest variantDigest = sha256();
+				variantDigest.update(digest);
+				content = variantDigest.digest(variant.toString().getBytes(StandardCharsets.UTF_8));
+			}
+			id = Arrays.copyOf(content, DOCUMENT_ID_LENGTH);
+		} else {
+			id = new byte[DOCUMENT_ID_LENGTH];
+			RANDOM.nextBytes(id);
+			document.getDocumentInformation().setModificationDate(Calendar.getInstance());
+		}
+		final COSArray ids = new COSArray();
+		ids.add(new COSString(id));
+		ids.add(new COSString(id));
+		document.getDocument().getTrailer().setItem(COSName.ID, ids);
+	}
+
+	/**
+	 * Generates the claim read from the form. A claim read as it arrives is laid out and written a page at a time, so
+	 * that only one page of its lines is held however large it is; otherwise the whole claim is laid out first, so its
+	 * pages can be written concurrently.
+	 */
+	private void generatePdf(final FormReader reader, final PdfTemplateRegistry.RegisteredTemplate template,
+			final PdfLayoutSettings settings, final String input, final boolean paged, final OutputStream output)
+			throws IOException, PdfGeneratorBusyException {
+		final Timer.Sample total = this.metrics.start();
+		final DigestFormReader digestReader = new DigestFormReader(reader, settings);
+		final SaveOutputStream saveOutput = new SaveOutputStream(output);
+		try (PdfMemoryBudget.Allocation allocation = this.memoryBudget.allocate()) {
+			final Timer.Sample layout = this.metrics.start();
+			final PdfGenerator generator = new PdfGenerator(digestReader, template.getTemplate(), this.fonts,
+					allocation.getMemoryUsageSetting(), settings);
+			try (PDDocument document = paged ? renderPages(generator, digestReader) : render(generator, digestReader)) {
+				this.metrics.recordLayout(layout, input);
+				setDocumentId(document, template, settings, digestReader.getDigest());
+				if (this.pdfA) {
+					PdfAConformance.apply(document);
+				}
+				save(document, saveOutput, input);
+				this.metrics.recordGenerated(total, input, document.getNumberOfPages(), digestReader.getFieldCount(),
+						saveOutput.count);
+				allocation.checkSpilled();
+			}
+		} catch (final RuntimeException e) {
+			this.metrics.recordFailure(input, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Buffers what PDFBox writes, which is otherwise passed on a few bytes at a time, and counts it. The buffer is
+	 * taken from a pool when first written to and returned to it when the stream is closed, which saving the document
+	 * always does, so no two streams ever share one.
+	 */
+	private static final class SaveOutputStream extends OutputStream {
+
+		private static final BlockingQueue<byte[]> BUFFERS = new ArrayBlockingQueue<>(MAX_POOLED_SAVE_BUFFERS);
+
+		private byte[] buffer;
+		private long count;
+		private final OutputStream output;
+		private int position;
+
+		private SaveOutputStream(final OutputStream output) {
+			this.output = output;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				flushBuffer();
+			} finally {
+				if (this.buffer != null) {
+					BUFFERS.offer(this.buffer);
+					this.buffer = null;
+				}
+				this.output.close();
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			flushBuffer();
+			this.output.flush();
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			final byte[] buf = buffer();
+			if (this.position == buf.length) {
+				flushBuffer();
+			}
+			buf[this.position++] = (byte) b;
+			this.count++;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			final byte[] buf = buffer();
+			if (len >= buf.length) {
+				flushBuffer();
+				this.output.write(b, off, len);
+			} else {
+				if (len > buf.length - this.position) {
+					flushBuffer();
+				}
+				System.arraycopy(b, off, buf, this.position, len);
+				this.position += len;
+			}
+			this.count += len;
+		}
+
+		private byte[] buffer() {
+			if (this.buffer == null) {
+				final byte[] pooled = BUFFERS.poll();
+				this.buffer = pooled == null ? new byte[SAVE_BUFFER_SIZE] : pooled;
+			}
+			return this.buffer;
+		}
+
+		private void flushBuffer() throws IOException {
+			if (this.position > 0) {
+				this.output.write(this.buffer, 0, this.position);
+				this.position = 0;
+			}
+		}
+	}
 }
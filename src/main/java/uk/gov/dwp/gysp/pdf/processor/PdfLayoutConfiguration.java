@@ -0,0 +1,38 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.gov.dwp.gysp.pdf.PdfLayoutSettings;
+
+/**
+ * The layout claims are generated with unless a request overrides it, from the {@code pdf.layout} properties, in
+ * points. {@code pdf.layout.margin} sets all four margins, and each can be set on its own. Left unset, claims are laid
+ * out as they always have been.
+ */
+@Configuration
+public class PdfLayoutConfiguration {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfLayoutConfiguration.class);
+
+	@Bean
+	public PdfLayoutSettings pdfLayoutSettings(@Value("${pdf.layout.font-size:10}") final float fontSize,
+			@Value("${pdf.layout.leading:20}") final float leading,
+			@Value("${pdf.layout.margin-top:${pdf.layout.margin:72}}") final float marginTop,
+			@Value("${pdf.layout.margin-right:${pdf.layout.margin:72}}") final float marginRight,
+			@Value("${pdf.layout.margin-bottom:${pdf.layout.margin:72}}") final float marginBottom,
+			@Value("${pdf.layout.margin-left:${pdf.layout.margin:72}}") final float marginLeft,
+			@Value("${pdf.layout.indent:0}") final float indent,
+			@Value("${pdf.layout.question-spacing:0}") final float questionSpacing,
+			@Value("${pdf.layout.answer-spacing:20}") final float answerSpacing) {
+		final PdfLayoutSettings settings = PdfLayoutSettings.builder().fontSize(fontSize).leading(leading)
+				.marginTop(marginTop).marginRight(marginRight).marginBottom(marginBottom).marginLeft(marginLeft)
+				.indent(indent).questionSpacing(questionSpacing).answerSpacing(answerSpacing).build();
+		if (!settings.equals(PdfLayoutSettings.getDefault())) {
+			LOGGER.info("Laying out pdfs with {}", settings);
+		}
+		return settings;
+	}
+}
@@ -0,0 +1,186 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorBusyException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the main memory PDFBox may use for the stream data of documents being generated. Each document may keep up
+ * to {@code pdf.memory.document-bytes} in memory before spilling to a scratch file under
+ * {@code pdf.memory.scratch-directory}, and documents are only started while their allowance fits within
+ * {@code pdf.memory.total-bytes}, waiting up to {@code pdf.memory.wait-millis} for one to finish before being refused.
+ * By default neither is limited, and documents are kept in main memory as before.
+ * <p>
+ * Each document being generated has a scratch directory of its own, so that a file in it shows the document spilled.
+ * PDFBox needs the directory to exist before it knows whether it will spill, so directories are kept for the next
+ * document once emptied, and only created when every one is in use.
+ */
+@Component
+public class PdfMemoryBudget {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfMemoryBudget.class);
+	private static final String OUT_OF_MEMORY_BUDGET = "Not enough memory to generate another pdf";
+	// the semaphore counts kilobytes, so a budget of several gigabytes still fits in an int
+	private static final int PERMIT_BYTES = 1024;
+
+	private final long documentBytes;
+	private final PdfGeneratorMetrics metrics;
+	private final Semaphore permits;
+	private final int permitsPerDocument;
+	private final Queue<Path> scratchDirectories = new ConcurrentLinkedQueue<>();
+	private final Path scratchDirectory;
+	private final long waitMillis;
+
+	@Autowired
+	public PdfMemoryBudget(@Value("${pdf.memory.document-bytes:-1}") final long documentBytes,
+			@Value("${pdf.memory.total-bytes:-1}") final long totalBytes,
+			@Value("${pdf.memory.wait-millis:0}") final long waitMillis,
+			@Value("${pdf.memory.scratch-directory:${java.io.tmpdir}}") final String scratchDirectory,
+			final PdfGeneratorMetrics metrics) {
+		if (totalBytes > 0 && documentBytes <= 0) {
+			throw new IllegalArgumentException("pdf.memory.total-bytes needs pdf.memory.document-bytes to be set");
+		}
+		if (totalBytes > 0 && totalBytes < documentBytes) {
+			throw new IllegalArgumentException("pdf.memory.total-bytes must be at least pdf.memory.document-bytes");
+		}
+		this.documentBytes = documentBytes;
+		this.waitMillis = waitMillis;
+		this.scratchDirectory = Paths.get(scratchDirectory);
+		this.metrics = metrics;
+		this.permitsPerDocument = (int) Math.max(1, documentBytes / PERMIT_BYTES);
+		this.permits = totalBytes > 0 ? new Semaphore((int) (totalBytes / PERMIT_BYTES), true) : null;
+		if (this.permits != null) {
+			metrics.registerMemoryAvailable(this.permits, semaphore -> (double) semaphore.availablePermits() * PERMIT_BYTES);
+		}
+	}
+
+	/**
+	 * No limits, every document kept in main memory.
+	 */
+	public static PdfMemoryBudget unlimited() {
+		return new PdfMemoryBudget(-1, -1, 0, System.getProperty("java.io.tmpdir"), PdfGeneratorMetrics.global());
+	}
+
+	/**
+	 * Reserves memory for a document, to be closed once the document has been closed.
+	 * 
+	 * @throws PdfGeneratorBusyException
+	 *             if the budget is still spent after waiting
+	 */
+	public Allocation allocate() throws PdfGeneratorBusyException, IOException {
+		if (this.documentBytes <= 0) {
+			return new Allocation(MemoryUsageSetting.setupMainMemoryOnly(), null, 0);
+		}
+		if (this.permits != null) {
+			boolean acquired;
+			try {
+				acquired = this.permits.tryAcquire(this.permitsPerDocument, this.waitMillis, TimeUnit.MILLISECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				acquired = false;
+			}
+			if (!acquired) {
+				this.metrics.recordMemoryRefused();
+				throw new PdfGeneratorBusyException(OUT_OF_MEMORY_BUDGET, null);
+			}
+		}
+		try {
+			final Path directory = scratchDirectory();
+			final MemoryUsageSetting setting = MemoryUsageSetting.setupMixed(this.documentBytes)
+					.setTempDir(directory.toFile());
+			return new Allocation(setting, directory, this.permits != null ? this.permitsPerDocument : 0);
+		} catch (final IOException | RuntimeException e) {
+			if (this.permits != null) {
+				this.permits.release(this.permitsPerDocument);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * An empty scratch directory no other document is using.
+	 */
+	private Path scratchDirectory() throws IOException {
+		Path directory;
+		while ((directory = this.scratchDirectories.poll()) != null) {
+			if (Files.isDirectory(directory)) {
+				return directory;
+			}
+		}
+		directory = Files.createTempDirectory(Files.createDirectories(this.scratchDirectory), "pdf-scratch");
+		directory.toFile().deleteOnExit();
+		return directory;
+	}
+
+	public final class Allocation implements AutoCloseable {
+
+		private final Path directory;
+		private final MemoryUsageSetting memoryUsageSetting;
+		private final int reserved;
+
+		private Allocation(final MemoryUsageSetting memoryUsageSetting, final Path directory, final int reserved) {
+			this.memoryUsageSetting = memoryUsageSetting;
+			this.directory = directory;
+			this.reserved = reserved;
+		}
+
+		public MemoryUsageSetting getMemoryUsageSetting() {
+			return this.memoryUsageSetting;
+		}
+
+		/**
+		 * Records whether the document spilled to disk; call before closing the document, which removes its scratch
+		 * file.
+		 */
+		public boolean checkSpilled() {
+			if (this.directory == null) {
+				return false;
+			}
+			try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+				if (files.iterator().hasNext()) {
+					PdfMemoryBudget.this.metrics.recordMemorySpill();
+					return true;
+				}
+			} catch (final IOException e) {
+				LOGGER.warn("Unable to check pdf scratch directory {}", this.directory, e);
+			}
+			return false;
+		}
+
+		@Override
+		public void close() {
+			if (this.reserved > 0) {
+				PdfMemoryBudget.this.permits.release(this.reserved);
+			}
+			if (this.directory != null) {
+				boolean emptied = true;
+				final File[] leftOver = this.directory.toFile().listFiles();
+				if (leftOver != null) {
+					for (final File file : leftOver) {
+						emptied &= file.delete();
+					}
+				}
+				if (emptied) {
+					PdfMemoryBudget.this.scratchDirectories.offer(this.directory);
+				} else {
+					this.directory.toFile().delete();
+				}
+			}
+		}
+	}
+}
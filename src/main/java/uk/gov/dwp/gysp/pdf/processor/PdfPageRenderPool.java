@@ -0,0 +1,56 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.PdfLayout;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * A fork join pool of {@code pdf.render.page-threads} threads (the number of cores by default) that writes the pages
+ * of a claim concurrently once it runs to {@code pdf.render.parallel-pages} pages. Off by default, when every claim is
+ * rendered on the thread generating it.
+ */
+@Component
+public class PdfPageRenderPool {
+
+	private final int minimumPages;
+	private final ForkJoinPool pool;
+
+	@Autowired
+	public PdfPageRenderPool(@Value("${pdf.render.page-threads:0}") final int threads,
+			@Value("${pdf.render.parallel-pages:0}") final int minimumPages) {
+		this.minimumPages = minimumPages;
+		if (minimumPages > 0) {
+			final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+			this.pool = new ForkJoinPool(poolSize, pool -> {
+				final ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+				thread.setName("pdf-page-" + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+		} else {
+			this.pool = null;
+		}
+	}
+
+	public static PdfPageRenderPool disabled() {
+		return new PdfPageRenderPool(0, 0);
+	}
+
+	/**
+	 * The pool to write the pages of the layout on, or null if it should be rendered on the calling thread.
+	 */
+	public ForkJoinPool forLayout(final PdfLayout layout) {
+		return this.pool != null && layout.getPageCount() >= this.minimumPages ? this.pool : null;
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		if (this.pool != null) {
+			this.pool.shutdownNow();
+		}
+	}
+}
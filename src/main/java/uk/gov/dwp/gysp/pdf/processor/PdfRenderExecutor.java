@@ -0,0 +1,78 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorBusyException;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.PdfSpan;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders PDFs away from the servlet threads, on a fixed number of render threads with a bounded queue of waiting
+ * requests. Once the queue is full further requests are refused with a {@link PdfGeneratorBusyException} rather than
+ * left to wait, so a burst of large claims cannot tie up every request thread.
+ */
+@Component
+public class PdfRenderExecutor {
+
+	private static final String QUEUE_FULL = "Too many pdfs waiting to be generated";
+
+	private final ThreadPoolExecutor executor;
+	private final PdfGeneratorProcessor pdfGeneratorProcessor;
+
+	@Autowired
+	public PdfRenderExecutor(final PdfGeneratorProcessor pdfGeneratorProcessor,
+			@Value("${pdf.render.threads:0}") final int threads, @Value("${pdf.render.queue:100}") final int queue) {
+		this.pdfGeneratorProcessor = pdfGeneratorProcessor;
+		final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<>(queue), new RenderThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+	}
+
+	/**
+	 * Queues the json to be rendered. The returned future completes with the PDF bytes, or exceptionally with the
+	 * {@link PdfGeneratorException} that stopped it being generated.
+	 */
+	public CompletableFuture<byte[]> generatePdfStream(final PdfRenderOptions options, final JsonNode json)
+			throws PdfGeneratorBusyException {
+		try {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return this.pdfGeneratorProcessor.generatePdfStream(options, json);
+				} catch (final PdfGeneratorException e) {
+					throw new CompletionException(e);
+				}
+			}, PdfSpan.inTrace(this.executor));
+		} catch (final RejectedExecutionException e) {
+			throw new PdfGeneratorBusyException(QUEUE_FULL, e);
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		this.executor.shutdownNow();
+	}
+
+	private static final class RenderThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "pdf-render-" + this.count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import uk.gov.dwp.gysp.pdf.PdfLayoutSettings;
+
+import java.util.Objects;
+
+/**
+ * What a request asks of the PDFs generated for it: the id of the template to generate them from, or null for the
+ * default template, and the settings to lay them out with, or null for those the processor is configured with.
+ */
+public final class PdfRenderOptions {
+
+	private static final PdfRenderOptions DEFAULTS = new PdfRenderOptions(null, null);
+
+	private final PdfLayoutSettings layout;
+	private final String templateId;
+
+	private PdfRenderOptions(final String templateId, final PdfLayoutSettings layout) {
+		this.templateId = templateId;
+		this.layout = layout;
+	}
+
+	/**
+	 * The default template, laid out with the processor's settings.
+	 */
+	public static PdfRenderOptions defaults() {
+		return DEFAULTS;
+	}
+
+	public static PdfRenderOptions of(final String templateId, final PdfLayoutSettings layout) {
+		return templateId == null && layout == null ? DEFAULTS : new PdfRenderOptions(templateId, layout);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof PdfRenderOptions)) {
+			return false;
+		}
+		final PdfRenderOptions other = (PdfRenderOptions) obj;
+		return Objects.equals(this.templateId, other.templateId) && Objects.equals(this.layout, other.layout);
+	}
+
+	public PdfLayoutSettings getLayout() {
+		return this.layout;
+	}
+
+	public String getTemplateId() {
+		return this.templateId;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(this.templateId, this.layout);
+	}
+
+	@Override
+	public String toString() {
+		return "template=" + this.templateId + ", layout=" + this.layout;
+	}
+}
@@ -0,0 +1,143 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * PDFs already generated, keyed by a SHA-256 hash of the claim's compact json. Field order is part of the key, as it
+ * decides the order of questions in the PDF. A claim sent again is answered from the store without rendering it;
+ * since rendering is deterministic the bytes are the same either way. A failure to read or write the store is logged
+ * and the claim rendered as if it were not cached.
+ */
+public class PdfResultCache {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfResultCache.class);
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+	private static final byte[] TEMPLATE_SEPARATOR = { 0 };
+
+	private final Counter hits;
+	private final Counter misses;
+	private final PdfResultStore store;
+
+	private PdfResultCache(final PdfResultStore store, final Counter hits, final Counter misses) {
+		this.store = store;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	/**
+	 * A cache that stores nothing, so every claim is rendered.
+	 */
+	public static PdfResultCache disabled() {
+		return new PdfResultCache(null, null, null);
+	}
+
+	public static PdfResultCache create(final PdfResultStoreFactory storeFactory, final MeterRegistry registry)
+			throws IOException {
+		final Counter evictions = Counter.builder("pdf.cache.evictions")
+				.description("Generated pdfs evicted from the cache").register(registry);
+		return new PdfResultCache(storeFactory.create(evictions::increment), requests(registry, "hit"),
+				requests(registry, "miss"));
+	}
+
+	static String hash(final byte[]... parts) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not available", e);
+		}
+		for (final byte[] part : parts) {
+			digest.update(part);
+		}
+		final byte[] hash = digest.digest();
+		final char[] key = new char[hash.length * 2];
+		for (int index = 0; index < hash.length; index++) {
+			key[index * 2] = HEX[(hash[index] >> 4) & 0xf];
+			key[index * 2 + 1] = HEX[hash[index] & 0xf];
+		}
+		return new String(key);
+	}
+
+	static String key(final JsonNode json) throws JsonProcessingException {
+		return hash(OBJECT_MAPPER.writeValueAsBytes(json));
+	}
+
+	static String key(final String template, final JsonNode json) throws JsonProcessingException {
+		return hash(template.getBytes(StandardCharsets.UTF_8), TEMPLATE_SEPARATOR,
+				OBJECT_MAPPER.writeValueAsBytes(json));
+	}
+
+	private static Counter requests(final MeterRegistry registry, final String result) {
+		return Counter.builder("pdf.cache.requests").description("Claims looked up in the pdf cache")
+				.tag("result", result).register(registry);
+	}
+
+	public byte[] get(final JsonNode json, final PdfRenderer renderer) throws PdfGeneratorException {
+		return get(null, json, renderer);
+	}
+
+	/**
+	 * Looks the claim up among PDFs generated from the template with the given key, which changes whenever the
+	 * template does, so a PDF generated from a template since replaced is never returned.
+	 */
+	public byte[] get(final String template, final JsonNode json, final PdfRenderer renderer)
+			throws PdfGeneratorException {
+		if (this.store == null) {
+			return renderer.render();
+		}
+
+		final String key;
+		try {
+			key = template == null ? key(json) : key(template, json);
+		} catch (final JsonProcessingException e) {
+			LOGGER.warn("Unable to hash claim, not caching it", e);
+			return renderer.render();
+		}
+
+		try {
+			final byte[] cached = this.store.get(key);
+			if (cached != null) {
+				this.hits.increment();
+				return cached;
+			}
+		} catch (final IOException e) {
+			LOGGER.warn("Unable to read cached pdf {}", key, e);
+		}
+		this.misses.increment();
+
+		final byte[] pdf = renderer.render();
+		try {
+			this.store.put(key, pdf);
+		} catch (final IOException e) {
+			LOGGER.warn("Unable to cache pdf {}", key, e);
+		}
+		return pdf;
+	}
+
+	public boolean isEnabled() {
+		return this.store != null;
+	}
+
+	@FunctionalInterface
+	public interface PdfRenderer {
+		byte[] render() throws PdfGeneratorException;
+	}
+
+	@FunctionalInterface
+	public interface PdfResultStoreFactory {
+		PdfResultStore create(Runnable onEviction) throws IOException;
+	}
+}
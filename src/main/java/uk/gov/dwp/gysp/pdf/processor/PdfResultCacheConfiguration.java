@@ -0,0 +1,36 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Creates the {@link PdfResultCache} from {@code pdf.cache.type}: {@code none} (the default), {@code memory} or
+ * {@code disk}, holding up to {@code pdf.cache.max-bytes} of PDFs, in {@code pdf.cache.directory} for a disk cache.
+ */
+@Configuration
+public class PdfResultCacheConfiguration {
+
+	@Bean
+	public PdfResultCache pdfResultCache(@Value("${pdf.cache.type:none}") final String type,
+			@Value("${pdf.cache.max-bytes:67108864}") final long maxBytes,
+			@Value("${pdf.cache.directory:${java.io.tmpdir}/pdf-generator-cache}") final String directory,
+			final MeterRegistry registry) throws IOException {
+
+		switch (type) {
+		case "none":
+			return PdfResultCache.disabled();
+		case "memory":
+			return PdfResultCache.create(onEviction -> new MemoryPdfResultStore(maxBytes, onEviction), registry);
+		case "disk":
+			return PdfResultCache.create(
+					onEviction -> new DiskPdfResultStore(Paths.get(directory), maxBytes, onEviction), registry);
+		default:
+			throw new IllegalArgumentException("Unknown pdf.cache.type " + type + ", expected none, memory or disk");
+		}
+	}
+}
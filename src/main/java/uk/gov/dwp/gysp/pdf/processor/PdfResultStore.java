@@ -0,0 +1,16 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import java.io.IOException;
+
+/**
+ * Where a {@link PdfResultCache} keeps generated PDFs.
+ */
+public interface PdfResultStore {
+
+	/**
+	 * @return the PDF stored under the key, or {@code null} if there is none
+	 */
+	byte[] get(String key) throws IOException;
+
+	void put(String key, byte[] pdf) throws IOException;
+}
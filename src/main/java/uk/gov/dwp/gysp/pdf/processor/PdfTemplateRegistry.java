@@ -0,0 +1,273 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
+import uk.gov.dwp.gysp.pdf.UnknownTemplateException;
+
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The templates claims can be generated from, by id. The built in template is registered as {@code claim}, and each
+ * {@code <id>.pdf} in {@code pdf.templates.location}, a {@code file:} or {@code classpath:} location, is parsed once
+ * at startup and registered under its id, replacing the built in template if it is called {@code claim.pdf}. A claim
+ * that does not ask for a template gets {@code pdf.templates.default}.
+ * <p>
+ * When the location is a directory, templates added, changed or removed there are reloaded on a background thread
+ * unless {@code pdf.templates.watch} is false. A template is only reloaded once its file has not changed for
+ * half a second, and did not change while it was read, so a template still being written is not picked up
+ * half written. A reloaded template replaces the old one whole, so renders already under way finish with the template
+ * they started with, and a template that fails to parse leaves the old one in use. A template that fails to parse at
+ * startup is left out, unless it is the default.
+ */
+@Component
+public class PdfTemplateRegistry {
+
+	public static final String BUILT_IN = "claim";
+
+	private static final String BUILT_IN_RESOURCE = "/Claim.pdf";
+	private static final Logger LOGGER = LoggerFactory.getLogger(PdfTemplateRegistry.class);
+	private static final long SETTLE_MILLIS = 500;
+	private static final Pattern TEMPLATE_FILE = Pattern.compile("([A-Za-z0-9_-]+)\\.pdf");
+
+	private final RegisteredTemplate builtIn;
+	private final String defaultId;
+	private final Path directory;
+	private final ConcurrentMap<String, RegisteredTemplate> templates = new ConcurrentHashMap<>();
+	private final WatchService watchService;
+
+	private PdfTemplateRegistry(final RegisteredTemplate builtIn) {
+		this.builtIn = builtIn;
+		this.defaultId = BUILT_IN;
+		this.directory = null;
+		this.watchService = null;
+		this.templates.put(BUILT_IN, builtIn);
+	}
+
+	@Autowired
+	public PdfTemplateRegistry(@Value("${pdf.templates.location:}") final String location,
+			@Value("${pdf.templates.default:claim}") final String defaultId,
+			@Value("${pdf.templates.watch:true}") final boolean watch) throws IOException {
+		try (InputStream input = PdfTemplateRegistry.class.getResourceAsStream(BUILT_IN_RESOURCE)) {
+			this.builtIn = new RegisteredTemplate(PdfTemplate.getDefault(),
+					BUILT_IN + ':' + PdfResultCache.hash(IOUtils.toByteArray(input)), true);
+		}
+		this.defaultId = defaultId;
+		this.templates.put(BUILT_IN, this.builtIn);
+
+		Path watchedDirectory = null;
+		if (!location.isEmpty()) {
+			final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+			final String base = location.endsWith("/") ? location : location + '/';
+			for (final Resource resource : resolver.getResources(base + "*.pdf")) {
+				final Matcher matcher = TEMPLATE_FILE.matcher(String.valueOf(resource.getFilename()));
+				if (matcher.matches()) {
+					try (InputStream input = resource.getInputStream()) {
+						this.templates.put(matcher.group(1), load(matcher.group(1), IOUtils.toByteArray(input)));
+					} catch (final IOException | RuntimeException e) {
+						LOGGER.error("Unable to load pdf template {}, leaving it out", matcher.group(1), e);
+					}
+				}
+			}
+			final Resource resource = resolver.getResource(base);
+			if (watch && resource.isFile() && Files.isDirectory(resource.getFile().toPath())) {
+				watchedDirectory = resource.getFile().toPath();
+			}
+		}
+		if (!this.templates.containsKey(defaultId)) {
+			throw new IllegalArgumentException("Default pdf template " + defaultId + " not found in " + location);
+		}
+		LOGGER.info("Loaded pdf templates {}", this.templates.keySet());
+
+		this.directory = watchedDirectory;
+		if (watchedDirectory != null) {
+			this.watchService = watchedDirectory.getFileSystem().newWatchService();
+			watchedDirectory.register(this.watchService, StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+			final Thread thread = new Thread(this::watch, "pdf-template-watch");
+			thread.setDaemon(true);
+			thread.start();
+		} else {
+			this.watchService = null;
+		}
+	}
+
+	/**
+	 * A registry of just the given template, registered as the built in one and never reloaded.
+	 */
+	public static PdfTemplateRegistry of(final PdfTemplate template) {
+		return new PdfTemplateRegistry(new RegisteredTemplate(template, BUILT_IN, true));
+	}
+
+	private static RegisteredTemplate load(final String id, final byte[] bytes) throws IOException {
+		return new RegisteredTemplate(PdfTemplate.load(new ByteArrayInputStream(bytes)),
+				id + ':' + PdfResultCache.hash(bytes), false);
+	}
+
+	@PreDestroy
+	public void close() throws IOException {
+		if (this.watchService != null) {
+			this.watchService.close();
+		}
+	}
+
+	/**
+	 * The template with the given id, or the default template if the id is null.
+	 */
+	public RegisteredTemplate get(final String id) throws UnknownTemplateException {
+		final RegisteredTemplate template = this.templates.get(id == null ? this.defaultId : id);
+		if (template == null) {
+			throw new UnknownTemplateException("Unknown pdf template " + id);
+		}
+		return template;
+	}
+
+	/**
+	 * Reloads the template from the file, or unregisters it if the file has gone, restoring the built in template
+	 * in place of a {@code claim.pdf} that has been removed.
+	 */
+	void refresh(final Path file) {
+		final Matcher matcher = TEMPLATE_FILE.matcher(file.getFileName().toString());
+		if (!matcher.matches()) {
+			return;
+		}
+		final String id = matcher.group(1);
+		if (!Files.exists(file)) {
+			if (BUILT_IN.equals(id)) {
+				this.templates.put(id, this.builtIn);
+			} else if (!id.equals(this.defaultId)) {
+				this.templates.remove(id);
+			} else {
+				LOGGER.warn("Default pdf template {} removed, keeping the one loaded before", id);
+				return;
+			}
+			LOGGER.info("Removed pdf template {}", id);
+			return;
+		}
+		try {
+			final FileTime modified = Files.getLastModifiedTime(file);
+			final byte[] bytes = Files.readAllBytes(file);
+			if (bytes.length != Files.size(file) || !modified.equals(Files.getLastModifiedTime(file))) {
+				// still being written; the next change to it reloads it again
+				LOGGER.debug("Pdf template {} changed while being read, keeping the one loaded before", id);
+				return;
+			}
+			this.templates.put(id, load(id, bytes));
+			LOGGER.info("Reloaded pdf template {}", id);
+		} catch (final IOException | RuntimeException e) {
+			// PDFBox fails on some broken files with runtime exceptions, which must not stop the watch thread
+			LOGGER.warn("Unable to reload pdf template {}, keeping the one loaded before", id, e);
+		}
+	}
+
+	/**
+	 * Reloads the files that have not changed for the settle time.
+	 */
+	private void refreshSettled(final Map<Path, Long> pending) {
+		final long settled = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+		final Iterator<Map.Entry<Path, Long>> iterator = pending.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<Path, Long> entry = iterator.next();
+			if (entry.getValue() - settled <= 0) {
+				iterator.remove();
+				refresh(entry.getKey());
+			}
+		}
+	}
+
+	private void watch() {
+		// files changed, by when they last changed, waiting to settle before they are reloaded
+		final Map<Path, Long> pending = new HashMap<>();
+		try {
+			while (true) {
+				final WatchKey key = pending.isEmpty() ? this.watchService.take()
+						: this.watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+				if (key != null) {
+					final long now = System.nanoTime();
+					for (final WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*.pdf")) {
+								for (final Path file : files) {
+									pending.put(file, now);
+								}
+							}
+						} else {
+							pending.put(this.directory.resolve((Path) event.context()), now);
+						}
+					}
+					if (!key.reset()) {
+						LOGGER.warn("Pdf template directory {} no longer available, templates will not be reloaded",
+								this.directory);
+						return;
+					}
+				}
+				refreshSettled(pending);
+			}
+		} catch (final ClosedWatchServiceException e) {
+			// closed on shutdown
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (final IOException e) {
+			LOGGER.warn("Unable to read pdf template directory {}, templates will not be reloaded", this.directory, e);
+		}
+	}
+
+	/**
+	 * A parsed template with a key that identifies its content, so PDFs generated from it can be told apart from ones
+	 * generated from a template it replaced.
+	 */
+	public static final class RegisteredTemplate {
+
+		private final boolean builtIn;
+		private final String key;
+		private final PdfTemplate template;
+
+		private RegisteredTemplate(final PdfTemplate template, final String key, final boolean builtIn) {
+			this.template = template;
+			this.key = key;
+			this.builtIn = builtIn;
+		}
+
+		public String getKey() {
+			return this.key;
+		}
+
+		public PdfTemplate getTemplate() {
+			return this.template;
+		}
+
+		/**
+		 * Whether this is the registry's built in template rather than one loaded from the templates location.
+		 */
+		public boolean isBuiltIn() {
+			return this.builtIn;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class JsonNodeFormReaderTest {
+
+	private static final int DEPTH = 100000;
+
+	@Test
+	public void deeplyNestedJsonIsReadWithoutRecursion() throws IOException {
+		// Given
+		final ObjectNode root = JsonNodeFactory.instance.objectNode();
+		ObjectNode node = root;
+		for (int i = 0; i < DEPTH; i++) {
+			node = node.withArray("Level").addObject();
+		}
+		node.put("Name", "Jim");
+		final AtomicInteger questions = new AtomicInteger();
+		final AtomicInteger answers = new AtomicInteger();
+
+		// When
+		new JsonNodeFormReader(root).read(new FormContentHandler() {
+
+			@Override
+			public void addFormAnswer(final String answer) {
+				answers.incrementAndGet();
+			}
+
+			@Override
+			public void addFormQuestion(final String question) {
+				questions.incrementAndGet();
+			}
+		});
+
+		// Then
+		assertEquals("Questions not as expected.", DEPTH + 1, questions.get());
+		assertEquals("Answers not as expected.", 1, answers.get());
+	}
+
+	@Test
+	public void unsupportedNodeDeepInDocumentIsRejected() {
+		// Given
+		final ObjectNode root = JsonNodeFactory.instance.objectNode();
+		ObjectNode node = root;
+		for (int i = 0; i < DEPTH; i++) {
+			node = node.putObject("Level/" + i);
+		}
+		node.put("Age", 42);
+
+		// When
+		try {
+			new JsonNodeFormReader(root).read(new FormContentHandler() {
+
+				@Override
+				public void addFormAnswer(final String answer) {
+				}
+
+				@Override
+				public void addFormQuestion(final String question) {
+				}
+			});
+			fail("Unsupported node type expected to be rejected.");
+		} catch (final IllegalArgumentException | IOException e) {
+			// Then
+			assertEquals("Message not as expected.",
+					"Node type: NUMBER for node Age is not currently supported when processing JSON objects",
+					e.getMessage());
+		}
+	}
+}
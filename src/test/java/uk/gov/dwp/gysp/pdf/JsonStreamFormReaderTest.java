@@ -0,0 +1,126 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JsonStreamFormReaderTest {
+
+	private static List<String> readParsed(final String json) throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		new JsonNodeFormReader(new ObjectMapper().readTree(json)).read(handler);
+		return handler.lines;
+	}
+
+	private static List<String> readStreamed(final String json) throws IOException {
+		final RecordingHandler handler = new RecordingHandler();
+		try (JsonParser parser = new JsonFactory().createParser(json)) {
+			new JsonStreamFormReader(parser).read(handler);
+		}
+		return handler.lines;
+	}
+
+	private static String unsupportedMessage(final String json, final boolean streamed) throws IOException {
+		try {
+			if (streamed) {
+				readStreamed(json);
+			} else {
+				readParsed(json);
+			}
+		} catch (final IllegalArgumentException e) {
+			return e.getMessage();
+		}
+		fail("Unsupported node type expected to be rejected.");
+		return null;
+	}
+
+	@Test
+	public void deeplyNestedJsonIsReadWithoutRecursion() throws IOException {
+		// Given
+		final StringBuilder json = new StringBuilder();
+		for (int i = 0; i < 100000; i++) {
+			json.append("{\"Level\": [");
+		}
+		json.append("{\"Name\": \"Jim\"}");
+		for (int i = 0; i < 100000; i++) {
+			json.append("]}");
+		}
+
+		// When
+		final List<String> result = readStreamed(json.toString());
+
+		// Then
+		assertEquals("Questions and answers not as expected.", 100002, result.size());
+		assertEquals("Innermost answer not as expected.", "A:Jim", result.get(result.size() - 1));
+	}
+
+	@Test
+	public void emptyInputIsRejected() throws IOException {
+		try {
+			readStreamed("");
+		} catch (final JsonProcessingException e) {
+			return;
+		}
+		fail("Empty input expected to be rejected.");
+	}
+
+	@Test
+	public void incompleteJsonIsRejected() throws IOException {
+		try {
+			readStreamed("{\"address\": {\"buildingNumber\": \"100\"");
+		} catch (final JsonProcessingException e) {
+			return;
+		}
+		fail("Incomplete json expected to be rejected.");
+	}
+
+	@Test
+	public void nonObjectRootProducesNoContent() throws IOException {
+		assertTrue("Array root expected to produce no content.", readStreamed("[\"One\", {\"Two\": \"2\"}]").isEmpty());
+	}
+
+	@Test
+	public void streamedContentMatchesParsedContent() throws IOException {
+		// Given
+		final String json = "{\"Person\": {\"First Name\":\"Jim\", \"Aliases\": [\"Jimbo\", {\"Fieĺd1\":\"OneĊ\"}],"
+				+ " \"Empty\": {}, \"None\": []}, \"Last\":\"Nameless\"}";
+
+		// When
+		final List<String> result = readStreamed(json);
+
+		// Then
+		assertEquals("Streamed questions and answers should match the parsed json.", readParsed(json), result);
+	}
+
+	@Test
+	public void unsupportedNodeTypesAreRejectedAsForParsedJson() throws IOException {
+		for (final String json : new String[] { "{\"Age\": 42}", "{\"Alive\": true}", "{\"Spouse\": null}",
+				"{\"Ages\": [42]}", "{\"Nested\": [[\"One\"]]}" }) {
+			assertEquals("Message not as expected for " + json, unsupportedMessage(json, false),
+					unsupportedMessage(json, true));
+		}
+	}
+
+	private static final class RecordingHandler implements FormContentHandler {
+
+		private final List<String> lines = new ArrayList<>();
+
+		@Override
+		public void addFormAnswer(final String answer) {
+			this.lines.add("A:" + answer);
+		}
+
+		@Override
+		public void addFormQuestion(final String question) {
+			this.lines.add("Q:" + question);
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.preflight.PreflightDocument;
+import org.apache.pdfbox.preflight.ValidationResult;
+import org.apache.pdfbox.preflight.parser.PreflightParser;
+import org.apache.pdfbox.preflight.utils.ByteArrayDataSource;
+import org.junit.Test;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorMetrics;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfMemoryBudget;
+import uk.gov.dwp.gysp.pdf.processor.PdfPageRenderPool;
+import uk.gov.dwp.gysp.pdf.processor.PdfResultCache;
+import uk.gov.dwp.gysp.pdf.processor.PdfTemplateRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PdfAConformanceTest {
+
+	private static final String CLAIM = "{\"Náme\": \"Zoë Brontë\", \"Address\": {\"Line 1\": \"1 High Street & Co\"}}";
+
+	private static PdfGeneratorProcessor processor(final PdfTemplate template, final boolean deterministic) {
+		return new PdfGeneratorProcessor(new PdfGeneratorMetrics(new SimpleMeterRegistry()), PdfResultCache.disabled(),
+				PdfMemoryBudget.unlimited(), PdfPageRenderPool.disabled(), PdfTemplateRegistry.of(template),
+				PdfLayoutSettings.getDefault(), deterministic, true);
+	}
+
+	private static void assertPdfA(final byte[] pdf) throws IOException {
+		final PreflightParser parser = new PreflightParser(new ByteArrayDataSource(new ByteArrayInputStream(pdf)));
+		parser.parse();
+		try (PreflightDocument document = parser.getPreflightDocument()) {
+			document.validate();
+			final ValidationResult result = document.getResult();
+			final StringBuilder errors = new StringBuilder();
+			for (final ValidationResult.ValidationError error : result.getErrorsList()) {
+				errors.append(error.getErrorCode()).append(' ').append(error.getDetails()).append('\n');
+			}
+			assertTrue("Expected a valid PDF/A-1b document, found:\n" + errors, result.isValid());
+		}
+	}
+
+	@Test
+	public void pdfAOutputPassesValidation() throws IOException, PdfGeneratorException {
+		// When
+		final byte[] pdf = processor(PdfTemplate.getDefault(), false)
+				.generatePdfStream(new ObjectMapper().readTree(CLAIM));
+
+		// Then
+		assertPdfA(pdf);
+		try (PDDocument document = PDDocument.load(pdf)) {
+			assertNull("Metadata should not be compressed.",
+					document.getDocumentCatalog().getMetadata().getCOSObject().getDictionaryObject(COSName.FILTER));
+		}
+	}
+
+	@Test
+	public void templateWithoutOutputIntentIsGivenOne() throws IOException, PdfGeneratorException {
+		// Given
+		final ByteArrayOutputStream source = new ByteArrayOutputStream();
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage());
+			document.getDocumentInformation().setTitle("Claim <draft> & notes");
+			document.save(source);
+		}
+		final PdfTemplate template = PdfTemplate.load(new ByteArrayInputStream(source.toByteArray()));
+
+		// When
+		final byte[] pdf = processor(template, true).generatePdfStream(new ObjectMapper().readTree(CLAIM));
+
+		// Then
+		assertPdfA(pdf);
+		try (PDDocument document = PDDocument.load(pdf)) {
+			assertEquals("Expected an sRGB output intent.", "sRGB IEC61966-2.1",
+					document.getDocumentCatalog().getOutputIntents().get(0).getOutputConditionIdentifier());
+		}
+	}
+}
@@ -0,0 +1,65 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class PdfFontMetricsTest {
+
+	private static final String[] TEXT = { "First Name", "Jim", "Gŵr gweddw, Ŷ Fferm", "Zoë Brontë, Besançon",
+			"Ελένη Παπαδοπούλου", "Ольга Смирнова", "" };
+
+	@Test
+	public void stringWidthsMatchEmbeddedFont() throws IOException {
+		// Given
+		final PdfFontCache fonts = PdfFontCache.getDefault();
+
+		try (PDDocument document = new PDDocument()) {
+			final PDFont regularFont = fonts.loadRegularFont(document);
+			final PDFont boldFont = fonts.loadBoldFont(document);
+
+			for (final String text : TEXT) {
+				// When
+				final float regularWidth = fonts.getRegularMetrics().getStringWidth(text);
+				final float boldWidth = fonts.getBoldMetrics().getStringWidth(text);
+
+				// Then
+				assertEquals("Regular width not as expected for " + text, regularFont.getStringWidth(text),
+						regularWidth, 0);
+				assertEquals("Bold width not as expected for " + text, boldFont.getStringWidth(text), boldWidth, 0);
+			}
+		}
+	}
+
+	@Test
+	public void stringWidthIsScaledToFontSize() {
+		// Given
+		final PdfFontMetrics metrics = PdfFontCache.getDefault().getRegularMetrics();
+
+		// When
+		final float width = metrics.getStringWidth("First Name", 10);
+
+		// Then
+		assertEquals("Width not scaled to font size.", metrics.getStringWidth("First Name") / 100, width, 0.001);
+	}
+
+	@Test
+	public void missingGlyphIsReported() {
+		// Given
+		final PdfFontMetrics metrics = PdfFontCache.getDefault().getRegularMetrics();
+
+		// Then
+		assertTrue("Expected glyph for latin character.", metrics.hasGlyph('J'));
+		assertFalse("Expected no glyph for CJK character.", metrics.hasGlyph('中'));
+		try {
+			metrics.getStringWidth("Jim 中");
+			fail("Expected missing glyph to be rejected.");
+		} catch (final IllegalArgumentException e) {
+			assertEquals("Message not as expected.", "No glyph for U+4E2D in font", e.getMessage());
+		}
+	}
+}
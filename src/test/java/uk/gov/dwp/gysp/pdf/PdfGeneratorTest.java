@@ -1,14 +1,28 @@
 package uk.gov.dwp.gysp.pdf;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.lang3.ArrayUtils;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.io.IOUtils;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -34,6 +48,141 @@ public class PdfGeneratorTest {
 		assertEquals("At least one page should always be provided.", expectedPageNo, result.getNumberOfPages());
 	}
 
+	@Test
+	public void fontsAreParsedOnceAndSharedBetweenDocuments() throws IOException {
+		// Given
+		final PdfFontCache fonts = PdfFontCache.getDefault();
+
+		// When
+		try (PDDocument first = PdfTemplate.getDefault().newDocument();
+				PDDocument second = PdfTemplate.getDefault().newDocument()) {
+			final PDFont firstFont = fonts.loadRegularFont(first);
+			final PDFont secondFont = fonts.loadRegularFont(second);
+			final PDFont secondBoldFont = fonts.loadBoldFont(second);
+
+			// Then
+			assertNotSame("Each document should embed its own font.", firstFont, secondFont);
+			assertSame("Regular font should not be parsed per document.", fonts.getRegularFont(),
+					((PDCIDFontType2) ((PDType0Font) firstFont).getDescendantFont()).getTrueTypeFont());
+			assertSame("Regular font should not be parsed per document.", fonts.getRegularFont(),
+					((PDCIDFontType2) ((PDType0Font) secondFont).getDescendantFont()).getTrueTypeFont());
+			assertSame("Bold font should not be parsed per document.", fonts.getBoldFont(),
+					((PDCIDFontType2) ((PDType0Font) secondBoldFont).getDescendantFont()).getTrueTypeFont());
+		}
+	}
+
+	@Test
+	public void generatedPdfEmbedsOnlyGlyphsUsed() throws IOException {
+		// Given
+		final JsonNode json = new ObjectMapper().readTree("{\"First Name\":\"Jim\"}");
+		final long fullFontLength;
+		try (InputStream input = getClass().getResourceAsStream("/org/apache/pdfbox/resources/ttf/Roboto-Regular.ttf")) {
+			fullFontLength = IOUtils.toByteArray(input).length;
+		}
+
+		// When
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (PDDocument document = new PdfGenerator(json).generate()) {
+			document.save(stream);
+		}
+
+		// Then
+		try (PDDocument result = PDDocument.load(stream.toByteArray())) {
+			final PDResources resources = result.getPage(0).getResources();
+			for (final COSName name : resources.getFontNames()) {
+				final PDType0Font font = (PDType0Font) resources.getFont(name);
+				assertTrue("Font should be a subset: " + font.getName(), font.getName().matches("[A-Z]{6}\\+Roboto-.*"));
+				final PDStream fontFile = font.getDescendantFont().getFontDescriptor().getFontFile2();
+				assertTrue("Embedded font should be much smaller than the full font.",
+						fontFile.toByteArray().length < fullFontLength / 10);
+			}
+		}
+	}
+
+	@Test
+	public void layoutIsMeasuredWithoutRenderingAndReplayedIdentically() throws IOException {
+		// Given
+		final StringBuilder jsonInput = new StringBuilder("{ \"Stuff\": [");
+		for (int i = 0; i < 100; i++) {
+			jsonInput.append(i > 0 ? "," : "").append(String.format(" {\"First Name%s\":\"Jim%s\"} ", i, i));
+		}
+		jsonInput.append("] }");
+		final JsonNode json = new ObjectMapper().readTree(jsonInput.toString());
+		final PdfGenerator generator = new PdfGenerator(json);
+
+		// When
+		final PdfLayout layout = generator.layout();
+
+		// Then
+		assertTrue("Claim expected to run past one page.", layout.getPageCount() > 1);
+		try (PDDocument first = generator.render(layout); PDDocument second = generator.render(layout)) {
+			assertEquals("Page count not as expected.", layout.getPageCount(), first.getNumberOfPages());
+			assertEquals("Replayed layout should give the same content.", getPdfContent(first), getPdfContent(second));
+		}
+	}
+
+	@Test
+	public void formLaidOutAPageAtATimeHoldsOnePageAndRendersTheSame() throws IOException {
+		// Given
+		final StringBuilder jsonInput = new StringBuilder("{ \"Stuff\": [");
+		for (int i = 0; i < 100; i++) {
+			jsonInput.append(i > 0 ? "," : "").append(String.format(" {\"First Name%s\":\"Jim%s\"} ", i, i));
+		}
+		jsonInput.append("] }");
+		final JsonNode json = new ObjectMapper().readTree(jsonInput.toString());
+		final PdfLayout whole = new PdfGenerator(json).layout();
+		final List<String> lines = new ArrayList<>();
+
+		// When
+		final int pages = PdfLayout.compile(new JsonNodeFormReader(json), PdfTemplate.getDefault(),
+				PdfFontCache.getDefault(), PdfLayoutSettings.getDefault(), (page, layout) -> {
+					assertEquals("Each page should be laid out on its own.", 1, layout.getPageCount());
+					assertEquals("Page not laid out as expected.",
+							whole.getPageStart(page + 1) - whole.getPageStart(page), layout.getLineCount());
+					for (int line = 0; line < layout.getLineCount(); line++) {
+						lines.add(layout.getLine(line));
+					}
+				});
+
+		// Then
+		assertEquals("Page count not as expected.", whole.getPageCount(), pages);
+		assertEquals("Line count not as expected.", whole.getLineCount(), lines.size());
+		try (PDDocument paged = new PdfGenerator(json).renderPages();
+				PDDocument rendered = new PdfGenerator(json).render(whole)) {
+			assertEquals("Page count not as expected.", whole.getPageCount(), paged.getNumberOfPages());
+			assertEquals("Pages rendered as laid out should give the same content.", getPdfContent(rendered),
+					getPdfContent(paged));
+		}
+	}
+
+	@Test
+	public void longAnswerIsWrappedWithinMargins() throws IOException {
+		// Given
+		final StringBuilder answer = new StringBuilder();
+		for (int i = 0; i < 60; i++) {
+			answer.append("word").append(i).append(' ');
+		}
+		final JsonNode json = new ObjectMapper()
+				.readTree(String.format("{\"Notes\":\"%s\", \"Surname\":\"Nameless\"}", answer.toString().trim()));
+		final PdfFontMetrics metrics = PdfFontCache.getDefault().getRegularMetrics();
+		final float lineWidth = PdfTemplate.getDefault().getMediaBox().getWidth() - 2 * 72;
+
+		// When
+		final String[] lines = getPdfContent(new PdfGenerator(json).generate())
+				.split(System.getProperty("line.separator"));
+
+		// Then
+		assertTrue("Expected answer to be wrapped.", lines.length > 4);
+		assertEquals("Question not as expected.", "Notes", lines[0]);
+		final StringBuilder wrapped = new StringBuilder();
+		for (int i = 1; i < lines.length - 2; i++) {
+			assertTrue("Line too wide: " + lines[i], metrics.getStringWidth(lines[i], 10) <= lineWidth);
+			wrapped.append(lines[i]).append(' ');
+		}
+		assertEquals("Answer not as expected.", answer.toString(), wrapped.toString());
+		assertEquals("Next question not as expected.", "Surname", lines[lines.length - 2]);
+	}
+
 	@Test
 	public void isTwoPagePdf() throws IOException {
 		// Given
@@ -57,6 +206,90 @@ public class PdfGeneratorTest {
 		assertEquals("Number of pages not as expected.", expectedPageNo, result.getNumberOfPages());
 	}
 
+	@Test
+	public void largeClaimAddsPagesBeyondTemplate() throws IOException {
+		// Given
+		final StringBuilder jsonInput = new StringBuilder("{ \"Stuff\": {");
+		final int itemsToGenerate = 200;
+		for (int i = 0; i < itemsToGenerate; i++) {
+			if (i > 0) {
+				jsonInput.append(",");
+			}
+			jsonInput.append(String.format(" \"First Name%s\":\"Jim%s\" ", i, i));
+		}
+		jsonInput.append(" } }");
+		final JsonNode json = new ObjectMapper().readTree(jsonInput.toString());
+
+		// When
+		final PDDocument result = new PdfGenerator(json).generate();
+
+		// Then
+		assertTrue("Claim expected to run past ten pages.", result.getNumberOfPages() > 10);
+		for (final PDPage page : result.getPages()) {
+			assertEquals("Added pages should use the template media box.",
+					PdfTemplate.getDefault().getMediaBox().toString(), page.getMediaBox().toString());
+		}
+		assertTrue("Last answer expected to be present.", getPdfContent(result).contains("Jim199"));
+		final PDFTextStripper stripper = new PDFTextStripper();
+		stripper.setStartPage(result.getNumberOfPages());
+		assertTrue("Last answer expected on the last page.", stripper.getText(result).contains("Jim199"));
+	}
+
+	@Test
+	public void tighterLayoutFitsClaimOnFewerPagesWithinMargins() throws IOException {
+		// Given
+		final StringBuilder jsonInput = new StringBuilder("{");
+		for (int i = 0; i < 200; i++) {
+			jsonInput.append(i > 0 ? "," : "").append(String.format(" \"First Name%s\":\"Jim%s\" ", i, i));
+		}
+		jsonInput.append("}");
+		final JsonNode json = new ObjectMapper().readTree(jsonInput.toString());
+		final PdfLayoutSettings settings = PdfLayoutSettings.builder().leading(12).answerSpacing(6).margin(54).build();
+
+		// When
+		final PdfLayout standard = new PdfGenerator(json).layout();
+		final PdfLayout tighter = PdfLayout.compile(new JsonNodeFormReader(json), PdfTemplate.getDefault(),
+				PdfFontCache.getDefault(), settings);
+
+		// Then
+		assertTrue("Expected fewer than half as many pages, found " + tighter.getPageCount() + " of "
+				+ standard.getPageCount(), tighter.getPageCount() * 2 < standard.getPageCount());
+		for (int line = 0; line < tighter.getLineCount(); line++) {
+			assertTrue("Line should be within the bottom margin.", tighter.getY(line) >= 54);
+			assertEquals("Line should start at the left margin.", 54, tighter.getX(line), 0);
+		}
+		try (PDDocument document = new PdfGenerator(new JsonNodeFormReader(json), PdfTemplate.getDefault(),
+				PdfFontCache.getDefault()).render(tighter)) {
+			assertTrue("Last answer expected to be present.", getPdfContent(document).contains("Jim199"));
+		}
+	}
+
+	@Test
+	public void nestedAnswersAreIndentedByLevel() throws IOException {
+		// Given
+		final String json = "{\"Name\": \"Jim\", \"Address\": {\"Line 1\": \"1 High Street\", "
+				+ "\"Previous\": [\"2 Low Road\", {\"Line 1\": \"3 Mill Lane\"}]}, \"Phone\": \"0123\"}";
+		final PdfLayoutSettings settings = PdfLayoutSettings.builder().indent(18).build();
+
+		// When
+		final PdfLayout tree = PdfLayout.compile(new JsonNodeFormReader(new ObjectMapper().readTree(json)),
+				PdfTemplate.getDefault(), PdfFontCache.getDefault(), settings);
+		final PdfLayout stream;
+		try (JsonParser parser = new JsonFactory().createParser(json)) {
+			stream = PdfLayout.compile(new JsonStreamFormReader(parser), PdfTemplate.getDefault(),
+					PdfFontCache.getDefault(), settings);
+		}
+
+		// Then
+		final float[] levels = { 0, 0, 0, 1, 1, 1, 2, 3, 3, 0, 0 };
+		assertEquals("Line count not as expected.", levels.length, tree.getLineCount());
+		for (int line = 0; line < levels.length; line++) {
+			assertEquals("Indent of " + tree.getLine(line) + " not as expected.", 72 + levels[line] * 18,
+					tree.getX(line), 0);
+			assertEquals("Streamed json should be indented the same.", tree.getX(line), stream.getX(line), 0);
+		}
+	}
+
 	@Test
 	public void pdfContainsExpectedContentForEmbeddedArrayObjects() throws IOException {
 		// Given
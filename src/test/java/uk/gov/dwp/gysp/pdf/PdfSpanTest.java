@@ -0,0 +1,78 @@
+package uk.gov.dwp.gysp.pdf;
+
+import brave.ScopedSpan;
+import brave.Tracing;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+import zipkin2.Span;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class PdfSpanTest {
+
+	private static final String CLAIM = "{\"First Name\": \"Jim\", \"Address\": {\"Line 1\": \"1 High Street\"}}";
+
+	private final List<Span> spans = new CopyOnWriteArrayList<>();
+	private Tracing tracing;
+
+	@Before
+	public void setUp() {
+		this.tracing = Tracing.newBuilder().spanReporter(this.spans::add).build();
+	}
+
+	@After
+	public void tearDown() {
+		this.tracing.close();
+	}
+
+	@Test
+	public void eachStageIsAChildOfTheRequestSpan() throws IOException, PdfGeneratorException {
+		// Given
+		final JsonNode json = new ObjectMapper().readTree(CLAIM);
+
+		// When
+		final ScopedSpan request = this.tracing.tracer().startScopedSpan("request");
+		final byte[] pdf;
+		try {
+			pdf = new PdfGeneratorProcessor().generatePdfStream(json);
+		} finally {
+			request.finish();
+		}
+
+		// Then
+		final Map<String, Span> byName = this.spans.stream()
+				.collect(Collectors.toMap(Span::name, Function.identity()));
+		for (final String stage : new String[] { PdfSpan.LAYOUT, PdfSpan.TEMPLATE, PdfSpan.FONTS, PdfSpan.WRITE,
+				PdfSpan.SAVE }) {
+			assertTrue("Expected a span for " + stage, byName.containsKey(stage));
+			assertEquals("Stage should be a child of the request.", byName.get("request").id(),
+					byName.get(stage).parentId());
+		}
+		assertEquals("Layout should be tagged with the count of questions and answers.", "5",
+				byName.get(PdfSpan.LAYOUT).tags().get(PdfSpan.FIELDS_TAG));
+		assertEquals("Save should be tagged with the page count.", "1",
+				byName.get(PdfSpan.SAVE).tags().get(PdfSpan.PAGES_TAG));
+		assertEquals("Save should be tagged with the size of the PDF.", String.valueOf(pdf.length),
+				byName.get(PdfSpan.SAVE).tags().get(PdfSpan.BYTES_TAG));
+	}
+
+	@Test
+	public void stagesOutsideATraceAreNotTraced() throws IOException, PdfGeneratorException {
+		// When
+		new PdfGeneratorProcessor().generatePdfStream(new ObjectMapper().readTree(CLAIM));
+
+		// Then
+		assertTrue("Expected no spans outside a trace.", this.spans.isEmpty());
+	}
+}
@@ -0,0 +1,87 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.Assert.*;
+
+public class PdfTemplateTest {
+
+	private static byte[] save(final PDDocument document) throws IOException {
+		final ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		try (PDDocument closeable = document) {
+			closeable.save(stream);
+		}
+		return stream.toByteArray();
+	}
+
+	@Test
+	public void newDocumentKeepsOnlyFirstTemplatePage() throws IOException {
+		// Given
+		final PDRectangle expectedMediaBox;
+		try (InputStream input = getClass().getResourceAsStream("/Claim.pdf");
+				PDDocument source = PDDocument.load(input)) {
+			expectedMediaBox = source.getPage(0).getMediaBox();
+		}
+
+		// When
+		try (PDDocument result = PdfTemplate.getDefault().newDocument()) {
+
+			// Then
+			assertEquals("Only the first template page should be kept.", 1, result.getNumberOfPages());
+			assertEquals("Media box not as expected.", expectedMediaBox.toString(),
+					result.getPage(0).getMediaBox().toString());
+			assertEquals("Template media box not as expected.", expectedMediaBox.toString(),
+					PdfTemplate.getDefault().getMediaBox().toString());
+		}
+	}
+
+	@Test
+	public void newDocumentIsIndependentOfOtherDocuments() throws IOException {
+		// Given
+		final PdfTemplate template = PdfTemplate.getDefault();
+		final int expectedPageNo = template.newDocument().getNumberOfPages();
+
+		// When
+		try (PDDocument first = template.newDocument(); PDDocument second = template.newDocument()) {
+			first.removePage(0);
+
+			// Then
+			assertEquals("Changes to one document should not affect another.", expectedPageNo,
+					second.getNumberOfPages());
+		}
+		assertEquals("Changes to a document should not affect the template.", expectedPageNo,
+				template.newDocument().getNumberOfPages());
+	}
+
+	@Test
+	public void cachedTemplateAndFontsProduceSamePdfAsFreshlyLoadedOnes() throws IOException {
+		// Given
+		final JsonNode json = new ObjectMapper()
+				.readTree("{\"Person\": {\"First Name\":\"Jim\", \"Aliases\": [\"Jimbo\", {\"Fieĺd1\":\"OneĊ\"}]}}");
+		final PdfTemplate freshTemplate;
+		final PdfFontCache freshFonts;
+		try (InputStream template = getClass().getResourceAsStream("/Claim.pdf");
+				InputStream regular = getClass().getResourceAsStream("/org/apache/pdfbox/resources/ttf/Roboto-Regular.ttf");
+				InputStream bold = getClass().getResourceAsStream("/org/apache/pdfbox/resources/ttf/Roboto-Bold.ttf")) {
+			freshTemplate = PdfTemplate.load(template);
+			freshFonts = PdfFontCache.load(regular, bold);
+		}
+
+		// When
+		final byte[] expected = save(new PdfGenerator(json, freshTemplate, freshFonts).generate());
+		final byte[] first = save(new PdfGenerator(json).generate());
+		final byte[] second = save(new PdfGenerator(json).generate());
+
+		// Then
+		assertArrayEquals("Cached template should produce the same PDF.", expected, first);
+		assertArrayEquals("Reusing the cached template should produce the same PDF.", expected, second);
+	}
+}
@@ -0,0 +1,64 @@
+package uk.gov.dwp.gysp.pdf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfRenderOptions;
+
+import java.io.OutputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+
+public class PdfWarmUpTest {
+
+	@Test
+	public void serviceIsNotReadyUntilWarmedUp() {
+		// Given
+		final PdfWarmUp warmUp = new PdfWarmUp(new PdfGeneratorProcessor(), true, 3);
+		assertEquals("Status before warm up not as expected.", WebEndpointResponse.STATUS_SERVICE_UNAVAILABLE,
+				warmUp.ready().getStatus());
+
+		// When
+		warmUp.warmUp();
+
+		// Then
+		final WebEndpointResponse<Health> ready = warmUp.ready();
+		assertEquals("Status after warm up not as expected.", WebEndpointResponse.STATUS_OK, ready.getStatus());
+		assertEquals("Health after warm up not as expected.", Status.UP, ready.getBody().getStatus());
+		assertTrue("Warm up should stop at the maximum rounds.",
+				(Integer) ready.getBody().getDetails().get("warmUpRounds") <= 3);
+	}
+
+	@Test
+	public void serviceIsReadyWhenWarmUpFailsWithAnError() throws PdfGeneratorException {
+		// Given
+		final PdfGeneratorProcessor processor = mock(PdfGeneratorProcessor.class);
+		willThrow(new NoClassDefFoundError("org/apache/pdfbox/pdmodel/PDDocument")).given(processor)
+				.generatePdf(any(PdfRenderOptions.class), any(JsonNode.class), any(OutputStream.class));
+		final PdfWarmUp warmUp = new PdfWarmUp(processor, true, 3);
+
+		// When
+		warmUp.warmUp();
+
+		// Then
+		final WebEndpointResponse<Health> ready = warmUp.ready();
+		assertEquals("Status after failed warm up not as expected.", WebEndpointResponse.STATUS_OK, ready.getStatus());
+		assertEquals("Failure not reported.", "failed", ready.getBody().getDetails().get("warmUp"));
+	}
+
+	@Test
+	public void serviceIsReadyWithoutWarmUp() {
+		// When
+		final PdfWarmUp warmUp = new PdfWarmUp(new PdfGeneratorProcessor(), false, 3);
+
+		// Then
+		assertEquals("Status without warm up not as expected.", WebEndpointResponse.STATUS_OK,
+				warmUp.ready().getStatus());
+	}
+}
@@ -19,6 +19,7 @@ import org.springframework.web.client.RestTemplate;
 
 import java.io.IOException;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
@@ -66,6 +67,23 @@ public class ServiceControllerIT {
 		pdfParser.getPDDocument().close();
 	}
 
+	@Test
+	public void postStreamPdfShouldReturnSameBytesAsGeneratePdf() {
+		// Given
+		final String json = "{" + "\"address\": {" + "\"buildingNumber\": \"100\"," + "\"town\": \"Newcastle\"" + "},"
+				+ "\"firstName\": \"Jim\"," + "\"surname\": \"Nameless\"" + "}";
+
+		// When
+		final ResponseEntity<byte[]> expected = this.restTemplate
+				.postForEntity(getPdfServiceApiEndpoint() + "/generatePdf", json, byte[].class);
+		final ResponseEntity<byte[]> response = this.restTemplate
+				.postForEntity(getPdfServiceApiEndpoint() + "/streamPdf", json, byte[].class);
+
+		// Then
+		assertEquals("Response status code not as expected", HttpStatus.OK, response.getStatusCode());
+		assertArrayEquals("Streamed pdf should match generated pdf", expected.getBody(), response.getBody());
+	}
+
 	@Test
 	public void postGeneratePdfWithInvalidJsonShouldReturnStatus400() {
 		// Given - Invalid Json not ended properly
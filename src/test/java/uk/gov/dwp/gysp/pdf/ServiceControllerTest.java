@@ -8,34 +8,176 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.context.WebApplicationContext;
+import uk.gov.dwp.gysp.pdf.processor.PdfBatchProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorMetrics;
 import uk.gov.dwp.gysp.pdf.processor.PdfGeneratorProcessor;
+import uk.gov.dwp.gysp.pdf.processor.PdfRenderExecutor;
+import uk.gov.dwp.gysp.pdf.processor.PdfRenderOptions;
+import uk.gov.dwp.gysp.pdf.processor.PdfTemplateRegistry;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willThrow;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 @RunWith(SpringRunner.class)
 @WebMvcTest(ServiceController.class)
+@TestPropertySource(properties = "pdf.json.max-bytes=1024")
 @WebAppConfiguration
 public class ServiceControllerTest {
 
 	private MockMvc mockMvc;
 
+	@MockBean
+	private PdfBatchProcessor pdfBatchProcessor;
+
+	@MockBean
+	private PdfGeneratorMetrics pdfGeneratorMetrics;
+
 	@MockBean
 	private PdfGeneratorProcessor pdfGeneratorProcessor;
 
+	@MockBean
+	private PdfRenderExecutor pdfRenderExecutor;
+
+	@MockBean
+	private PdfTemplateRegistry pdfTemplateRegistry;
+
 	@Autowired
 	private WebApplicationContext webApplicationContext;
 
+	@Test
+	public void postGeneratePdfBundleShouldReturnPdf() throws Exception {
+		// Given
+		final byte[] pdf = { 1, 2, 3, 4 };
+		willAnswer(invocation -> {
+			invocation.<OutputStream>getArgument(2).write(pdf);
+			return null;
+		}).given(pdfGeneratorProcessor).generatePdfBundle(eq(PdfRenderOptions.defaults()), any(InputStream.class),
+				any(OutputStream.class));
+
+		// When
+		final MvcResult started = this.mockMvc.perform(post("/api/pdfGenerator/generatePdfBundle")
+				.contentType(MediaType.APPLICATION_JSON).content("[{}, {}]")).andExpect(request().asyncStarted())
+				.andReturn();
+		final ResultActions action = this.mockMvc.perform(asyncDispatch(started));
+
+		// Then
+		action.andExpect(status().isOk());
+		assertArrayEquals("Content not as expected", pdf, action.andReturn().getResponse().getContentAsByteArray());
+	}
+
+	@Test
+	public void postGeneratePdfBatchShouldReturnZip() throws Exception {
+		// Given
+		final byte[] zip = { 80, 75, 5, 6 };
+		willAnswer(invocation -> {
+			invocation.<OutputStream>getArgument(2).write(zip);
+			return null;
+		}).given(pdfBatchProcessor).generatePdfBatch(eq(PdfRenderOptions.defaults()), any(InputStream.class),
+				any(OutputStream.class));
+
+		// When
+		final MvcResult started = this.mockMvc.perform(post("/api/pdfGenerator/generatePdfBatch")
+				.contentType(MediaType.APPLICATION_JSON).content("[{}, {}]")).andExpect(request().asyncStarted())
+				.andReturn();
+		final ResultActions action = this.mockMvc.perform(asyncDispatch(started));
+
+		// Then
+		action.andExpect(status().isOk());
+		final MvcResult result = action.andReturn();
+		assertEquals("Content type not as expected", "application/zip", result.getResponse().getContentType());
+		assertArrayEquals("Content not as expected", zip, result.getResponse().getContentAsByteArray());
+	}
+
+	@Test
+	public void postEstimatePdfShouldReturnPagesAndBytes() throws Exception {
+		// Given
+		given(pdfGeneratorProcessor.estimate(eq(PdfRenderOptions.defaults()), any(JsonNode.class)))
+				.willReturn(new PdfEstimate(3, 24576));
+
+		// When
+		final ResultActions action = this.mockMvc
+				.perform(post("/api/pdfGenerator/estimatePdf").contentType(MediaType.APPLICATION_JSON).content("{}"));
+
+		// Then
+		action.andExpect(status().isOk());
+		assertEquals("Content not as expected", "{\"bytes\":24576,\"pages\":3}",
+				action.andReturn().getResponse().getContentAsString());
+	}
+
+	@Test
+	public void postGeneratePdfAsyncShouldReturnStatus200() throws Exception {
+		// Given
+		final byte[] pdf = { 1, 2, 3, 4 };
+		given(pdfRenderExecutor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(JsonNode.class)))
+				.willReturn(CompletableFuture.completedFuture(pdf));
+
+		// When
+		final MvcResult started = this.mockMvc
+				.perform(post("/api/pdfGenerator/generatePdfAsync").contentType(MediaType.APPLICATION_JSON).content("{}"))
+				.andExpect(request().asyncStarted()).andReturn();
+		final ResultActions action = this.mockMvc.perform(asyncDispatch(started));
+
+		// Then
+		action.andExpect(status().isOk());
+		assertArrayEquals("Content not as expected", pdf, action.andReturn().getResponse().getContentAsByteArray());
+	}
+
+	@Test
+	public void postGeneratePdfAsyncWhenGenerationFailsShouldReturnStatus500() throws Exception {
+		// Given
+		final CompletableFuture<byte[]> failed = new CompletableFuture<>();
+		failed.completeExceptionally(new PdfGeneratorException("Unable to generate pdf document"));
+		given(pdfRenderExecutor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(JsonNode.class)))
+				.willReturn(failed);
+
+		// When
+		final MvcResult started = this.mockMvc
+				.perform(post("/api/pdfGenerator/generatePdfAsync").contentType(MediaType.APPLICATION_JSON).content("{}"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		// Then
+		this.mockMvc.perform(asyncDispatch(started)).andExpect(status().isInternalServerError());
+	}
+
+	@Test
+	public void postGeneratePdfAsyncWhenBusyShouldReturnStatus503() throws Exception {
+		// Given
+		given(pdfRenderExecutor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(JsonNode.class))).willThrow(
+				new PdfGeneratorBusyException("Too many pdfs waiting to be generated", new RejectedExecutionException()));
+
+		// When
+		final ResultActions action = this.mockMvc
+				.perform(post("/api/pdfGenerator/generatePdfAsync").contentType(MediaType.APPLICATION_JSON).content("{}"));
+
+		// Then
+		action.andExpect(status().isServiceUnavailable()).andExpect(header().string("Retry-After", "1"));
+	}
+
 	@Test
 	public void postGeneratePdfWithInvalidJsonShouldReturnStatus400() throws Exception {
 		// Given - Invalid Json
@@ -49,11 +191,100 @@ public class ServiceControllerTest {
 		action.andExpect(status().isBadRequest());
 	}
 
+	@Test
+	public void postGeneratePdfWithDuplicateFieldShouldReturnStatus400() throws Exception {
+		// Given - a question answered twice
+		final String json = "{\"Name\": \"Jim\", \"Name\": \"Bob\"}";
+
+		// When
+		final ResultActions action = this.mockMvc
+				.perform(post("/api/pdfGenerator/generatePdf").contentType(MediaType.APPLICATION_JSON).content(json));
+
+		// Then
+		action.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void postGeneratePdfWithJsonOverLimitShouldReturnStatus413() throws Exception {
+		// Given - json of more than the 1024 bytes allowed
+		final StringBuilder json = new StringBuilder("{\"Details\": \"");
+		for (int i = 0; i < 1024; i++) {
+			json.append('x');
+		}
+		json.append("\"}");
+
+		// When
+		final ResultActions action = this.mockMvc.perform(
+				post("/api/pdfGenerator/generatePdf").contentType(MediaType.APPLICATION_JSON).content(json.toString()));
+
+		// Then
+		action.andExpect(status().isPayloadTooLarge());
+	}
+
+	@Test
+	public void postGeneratePdfWithUnknownTemplateShouldReturnStatus404() throws Exception {
+		// Given
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.of("pension", null)), any(JsonNode.class)))
+				.willThrow(new UnknownTemplateException("Unknown pdf template pension"));
+
+		// When
+		final ResultActions action = this.mockMvc.perform(post("/api/pdfGenerator/generatePdf")
+				.param("template", "pension").contentType(MediaType.APPLICATION_JSON).content("{}"));
+
+		// Then
+		action.andExpect(status().isNotFound());
+	}
+
+	@Test
+	public void postGeneratePdfWithLayoutShouldOverrideProcessorSettings() throws Exception {
+		// Given
+		given(pdfGeneratorProcessor.getLayoutSettings()).willReturn(PdfLayoutSettings.getDefault());
+		final PdfLayoutSettings expected = PdfLayoutSettings.builder().leading(12).answerSpacing(6).build();
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.of(null, expected)), any(JsonNode.class)))
+				.willReturn(new byte[2]);
+
+		// When
+		final ResultActions action = this.mockMvc.perform(post("/api/pdfGenerator/generatePdf")
+				.param("leading", "12").param("answer-spacing", "6").contentType(MediaType.APPLICATION_JSON)
+				.content("{}"));
+
+		// Then
+		action.andExpect(status().isOk());
+		assertEquals("Content length not as expected", 2, action.andReturn().getResponse().getContentLength());
+	}
+
+	@Test
+	public void postGeneratePdfWithInvalidLayoutShouldReturnStatus400() throws Exception {
+		// Given
+		given(pdfGeneratorProcessor.getLayoutSettings()).willReturn(PdfLayoutSettings.getDefault());
+
+		// When
+		final ResultActions action = this.mockMvc.perform(post("/api/pdfGenerator/generatePdf")
+				.param("font-size", "1000").contentType(MediaType.APPLICATION_JSON).content("{}"));
+
+		// Then
+		action.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void postStreamPdfWithUnknownTemplateShouldReturnStatus404() throws Exception {
+		// Given
+		given(pdfTemplateRegistry.get("pension")).willThrow(new UnknownTemplateException("Unknown pdf template pension"));
+
+		// When
+		final ResultActions action = this.mockMvc.perform(post("/api/pdfGenerator/streamPdf")
+				.param("template", "pension").contentType(MediaType.APPLICATION_JSON).content("{}"));
+
+		// Then
+		action.andExpect(status().isNotFound());
+	}
+
 	@Test
 	public void postGeneratePdfWithShouldReturnStatus200() throws Exception {
 		// Given
 		final String json = "{}";
-		given(pdfGeneratorProcessor.generatePdfStream(any(JsonNode.class))).willReturn(new byte[2]);
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(JsonNode.class)))
+				.willReturn(new byte[2]);
 
 		// When
 		final ResultActions action = this.mockMvc
@@ -67,8 +298,123 @@ public class ServiceControllerTest {
 
 	}
 
+	@Test
+	public void postGeneratePdfFromStreamWithInvalidJsonShouldReturnStatus400() throws Exception {
+		// Given
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(InputStream.class)))
+				.willThrow(new InvalidJsonException("Unable to read json", new IOException()));
+
+		// When
+		final ResultActions action = this.mockMvc.perform(
+				post("/api/pdfGenerator/generatePdfFromStream").contentType(MediaType.APPLICATION_JSON).content("{\"}"));
+
+		// Then
+		action.andExpect(status().isBadRequest());
+	}
+
+	@Test
+	public void postGeneratePdfFromStreamWithJsonOverLimitShouldReturnStatus413() throws Exception {
+		// Given - json of more than the 1024 bytes allowed, refused by the processor as it reads past the limit
+		final StringBuilder json = new StringBuilder("{\"Details\": \"");
+		for (int i = 0; i < 1024; i++) {
+			json.append('x');
+		}
+		json.append("\"}");
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(InputStream.class)))
+				.willAnswer(invocation -> {
+					try {
+						StreamUtils.drain(invocation.getArgument(1));
+					} catch (final LimitedInputStream.LimitExceededException e) {
+						throw new JsonTooLargeException("Unable to read json", e);
+					}
+					return new byte[2];
+				});
+
+		// When
+		final ResultActions action = this.mockMvc.perform(post("/api/pdfGenerator/generatePdfFromStream")
+				.contentType(MediaType.APPLICATION_JSON).content(json.toString()));
+
+		// Then
+		action.andExpect(status().isPayloadTooLarge());
+	}
+
+	@Test
+	public void postGeneratePdfFromStreamShouldReturnStatus200() throws Exception {
+		// Given
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(InputStream.class)))
+				.willReturn(new byte[2]);
+
+		// When
+		final ResultActions action = this.mockMvc.perform(
+				post("/api/pdfGenerator/generatePdfFromStream").contentType(MediaType.APPLICATION_JSON).content("{}"));
+
+		// Then
+		action.andExpect(status().isOk());
+		final MvcResult result = action.andReturn();
+		assertEquals("Content type not as expected", MediaType.APPLICATION_OCTET_STREAM_VALUE,
+				result.getResponse().getContentType());
+		assertEquals("Content not as expected", 2, result.getResponse().getContentLength());
+	}
+
+	@Test
+	public void postStreamPdfShouldReturnSameBytesAsGeneratePdf() throws Exception {
+		// Given
+		final String json = "{\"First Name\":\"Jim\"}";
+		final byte[] pdf = { 1, 2, 3, 4 };
+		given(pdfGeneratorProcessor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(JsonNode.class)))
+				.willReturn(pdf);
+		willAnswer(invocation -> {
+			invocation.<OutputStream>getArgument(2).write(pdf);
+			return null;
+		}).given(pdfGeneratorProcessor).generatePdf(eq(PdfRenderOptions.defaults()), any(JsonNode.class),
+				any(OutputStream.class));
+
+		// When
+		final MvcResult started = this.mockMvc
+				.perform(post("/api/pdfGenerator/streamPdf").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andExpect(request().asyncStarted()).andReturn();
+		final ResultActions action = this.mockMvc.perform(asyncDispatch(started));
+
+		// Then
+		action.andExpect(status().isOk());
+		final MvcResult result = action.andReturn();
+		assertEquals("Content type not as expected", MediaType.APPLICATION_OCTET_STREAM_VALUE,
+				result.getResponse().getContentType());
+		final byte[] expected = this.mockMvc
+				.perform(post("/api/pdfGenerator/generatePdf").contentType(MediaType.APPLICATION_JSON).content(json))
+				.andReturn().getResponse().getContentAsByteArray();
+		assertArrayEquals("Streamed content should match generated content.", expected,
+				result.getResponse().getContentAsByteArray());
+	}
+
+	@Test
+	public void postStreamPdfWhenGenerationFailsShouldReturnStatus500() throws Exception {
+		// Given
+		willThrow(new PdfGeneratorException("Unable to generate pdf document")).given(pdfGeneratorProcessor)
+				.generatePdf(eq(PdfRenderOptions.defaults()), any(JsonNode.class), any(OutputStream.class));
+
+		// When
+		final MvcResult started = this.mockMvc
+				.perform(post("/api/pdfGenerator/streamPdf").contentType(MediaType.APPLICATION_JSON).content("{}"))
+				.andExpect(request().asyncStarted()).andReturn();
+
+		// Then
+		this.mockMvc.perform(asyncDispatch(started)).andExpect(status().isInternalServerError());
+	}
+
+	@Test
+	public void postStreamPdfWithInvalidJsonShouldReturnStatus400() throws Exception {
+		// When
+		final ResultActions action = this.mockMvc
+				.perform(post("/api/pdfGenerator/streamPdf").contentType(MediaType.APPLICATION_JSON).content("{\"}"));
+
+		// Then
+		action.andExpect(status().isBadRequest());
+	}
+
 	@Before
 	public void setup() {
 		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		given(pdfGeneratorProcessor.getClaimReader()).willReturn(new PdfGeneratorProcessor().getClaimReader());
 	}
 }
@@ -0,0 +1,89 @@
+package uk.gov.dwp.gysp.pdf;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TextWrapperTest {
+
+	private static final float FONT_SIZE = 10;
+
+	private final PdfFontMetrics metrics = PdfFontCache.getDefault().getRegularMetrics();
+
+	private TextWrapper wrapperFor(final String text) {
+		return new TextWrapper(this.metrics, FONT_SIZE, this.metrics.getStringWidth(text, FONT_SIZE));
+	}
+
+	@Test
+	public void textThatFitsIsNotWrapped() {
+		// Given
+		final String text = "Some Terrace, Newcastle";
+
+		// When
+		final List<String> lines = wrapperFor(text).wrap(text);
+
+		// Then
+		assertEquals("Text should not be wrapped.", Collections.singletonList(text), lines);
+	}
+
+	@Test
+	public void textIsWrappedAtSpaces() {
+		// Given
+		final TextWrapper wrapper = wrapperFor("100 Some Terrace");
+
+		// When
+		final List<String> lines = wrapper.wrap("100 Some Terrace Newcastle Tyne & Wear");
+
+		// Then
+		assertEquals("Lines not as expected.", Arrays.asList("100 Some Terrace", "Newcastle Tyne &", "Wear"), lines);
+	}
+
+	@Test
+	public void wordWiderThanLineIsBroken() {
+		// Given
+		final TextWrapper wrapper = wrapperFor("ABCDE");
+
+		// When
+		final List<String> lines = wrapper.wrap("AB ABCDEABCDEAB CD");
+
+		// Then
+		assertEquals("Lines not as expected.", Arrays.asList("AB", "ABCDE", "ABCDE", "AB CD"), lines);
+	}
+
+	@Test
+	public void lineBreaksAreKept() {
+		// Given
+		final TextWrapper wrapper = wrapperFor("100 Some Terrace Newcastle");
+
+		// When
+		final List<String> lines = wrapper.wrap("100 Some Terrace\r\nNewcastle\n\nNE6 XYZ");
+
+		// Then
+		assertEquals("Lines not as expected.", Arrays.asList("100 Some Terrace", "Newcastle", "", "NE6 XYZ"), lines);
+	}
+
+	@Test
+	public void wrappedLinesFitWidth() {
+		// Given
+		final float width = 200;
+		final TextWrapper wrapper = new TextWrapper(this.metrics, FONT_SIZE, width);
+		final StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			text.append("Gŵr gweddw ").append(i).append(' ');
+		}
+
+		// When
+		final List<String> lines = wrapper.wrap(text.toString().trim());
+
+		// Then
+		assertTrue("Expected text to be wrapped.", lines.size() > 1);
+		for (final String line : lines) {
+			assertTrue("Line too wide: " + line, this.metrics.getStringWidth(line, FONT_SIZE) <= width);
+		}
+		assertEquals("Text should be kept.", text.toString().trim(), String.join(" ", lines));
+	}
+}
@@ -0,0 +1,217 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import uk.gov.dwp.gysp.pdf.LimitedInputStream;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class PdfBatchProcessorTest {
+
+	private PdfBatchProcessor batchProcessor;
+
+	private static Map<String, byte[]> unzip(final byte[] zip) throws IOException {
+		final Map<String, byte[]> entries = new LinkedHashMap<>();
+		try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			ZipEntry entry;
+			while ((entry = input.getNextEntry()) != null) {
+				entries.put(entry.getName(), IOUtils.toByteArray(input));
+			}
+		}
+		return entries;
+	}
+
+	private static String getPdfContent(final byte[] pdf) throws IOException {
+		try (PDDocument document = PDDocument.load(pdf)) {
+			return new PDFTextStripper().getText(document);
+		}
+	}
+
+	private Map<String, byte[]> generate(final String claims) throws PdfGeneratorException, IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		this.batchProcessor.generatePdfBatch(PdfRenderOptions.defaults(),
+				new ByteArrayInputStream(claims.getBytes(StandardCharsets.UTF_8)), output);
+		return unzip(output.toByteArray());
+	}
+
+	@Test
+	public void arrayOfClaimsProducesPdfPerClaimInOrder() throws IOException, PdfGeneratorException {
+		// Given
+		final StringBuilder claims = new StringBuilder("[");
+		final int claimsToGenerate = 12;
+		for (int i = 0; i < claimsToGenerate; i++) {
+			if (i > 0) {
+				claims.append(",");
+			}
+			claims.append(String.format("{\"First Name\":\"Jim%s\"}", i));
+		}
+		claims.append("]");
+
+		// When
+		final Map<String, byte[]> result = generate(claims.toString());
+
+		// Then
+		assertEquals("Expected a pdf per claim and a manifest.", claimsToGenerate + 1, result.size());
+		int index = 0;
+		for (final String name : result.keySet()) {
+			if (index < claimsToGenerate) {
+				assertEquals("Entries not in input order.", String.format("claim-%05d.pdf", index), name);
+				assertTrue("Pdf content not as expected.", getPdfContent(result.get(name)).contains("Jim" + index));
+			} else {
+				assertEquals("Manifest expected last.", "manifest.json", name);
+			}
+			index++;
+		}
+	}
+
+	@Test
+	public void batchLargerThanLimitOfSmallClaimsIsGeneratedInFull() throws IOException, PdfGeneratorException {
+		// Given claims of a few hundred bytes each, coming to several times the limit
+		final int limit = 16 * 1024;
+		final int claimsToGenerate = 200;
+		final StringBuilder claims = new StringBuilder();
+		for (int i = 0; i < claimsToGenerate; i++) {
+			claims.append(String.format("{\"First Name\":\"Jim%s\", \"Details\":\"%0300d\"}%n", i, i));
+		}
+		final byte[] bytes = claims.toString().getBytes(StandardCharsets.UTF_8);
+		assertTrue("Batch expected to be larger than the limit.", bytes.length > 3 * limit);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		// When
+		this.batchProcessor.generatePdfBatch(PdfRenderOptions.defaults(),
+				new LimitedInputStream(new ByteArrayInputStream(bytes), limit), output);
+
+		// Then
+		final Map<String, byte[]> result = unzip(output.toByteArray());
+		final JsonNode manifest = new ObjectMapper().readTree(result.get("manifest.json"));
+		assertEquals("Manifest should list every claim.", claimsToGenerate, manifest.size());
+		for (final JsonNode item : manifest) {
+			assertEquals("Claim status not as expected.", 200, item.get("status").intValue());
+		}
+	}
+
+	@Test
+	public void claimLargerThanLimitInBatchIsRefusedWithStatus413() throws IOException, PdfGeneratorException {
+		// Given
+		final String claims = String.format("{\"First Name\":\"Jim\"}%n{\"Details\":\"%040000d\"}%n", 0);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		// When
+		this.batchProcessor.generatePdfBatch(PdfRenderOptions.defaults(), new LimitedInputStream(
+				new ByteArrayInputStream(claims.getBytes(StandardCharsets.UTF_8)), 16 * 1024), output);
+
+		// Then
+		final JsonNode manifest = new ObjectMapper().readTree(unzip(output.toByteArray()).get("manifest.json"));
+		assertEquals("Manifest should list the claims read.", 2, manifest.size());
+		assertEquals("First claim status not as expected.", 200, manifest.get(0).get("status").intValue());
+		assertEquals("Oversized claim status not as expected.", 413, manifest.get(1).get("status").intValue());
+	}
+
+	@Test
+	public void manifestReportsStatusOfEachClaim() throws IOException, PdfGeneratorException {
+		// When
+		final Map<String, byte[]> result = generate(
+				"{\"First Name\":\"Jim\"}\n{\"Age\": 42}\n{\"Surname\":\"Nameless\"}\n");
+
+		// Then
+		final JsonNode manifest = new ObjectMapper().readTree(result.get("manifest.json"));
+		assertEquals("Manifest should list each claim.", 3, manifest.size());
+		assertEquals("First claim status not as expected.", 200, manifest.get(0).get("status").intValue());
+		assertEquals("Second claim status not as expected.", 400, manifest.get(1).get("status").intValue());
+		assertEquals("Third claim status not as expected.", 200, manifest.get(2).get("status").intValue());
+		assertEquals("Failed claim file not as expected.", "claim-00001.error", manifest.get(1).get("file").textValue());
+		assertTrue("Failed claim message not as expected.",
+				new String(result.get("claim-00001.error"), StandardCharsets.UTF_8).contains("NUMBER"));
+		assertNotNull("Claims after a failed claim expected to be generated.", result.get("claim-00002.pdf"));
+	}
+
+	@Test
+	public void invalidJsonEndsBatchWithError() throws IOException, PdfGeneratorException {
+		// When
+		final Map<String, byte[]> result = generate("[{\"First Name\":\"Jim\"}, {\"Surname\":]");
+
+		// Then
+		final JsonNode manifest = new ObjectMapper().readTree(result.get("manifest.json"));
+		assertEquals("Manifest should list the claims read.", 2, manifest.size());
+		assertEquals("First claim status not as expected.", 200, manifest.get(0).get("status").intValue());
+		assertEquals("Invalid claim status not as expected.", 400, manifest.get(1).get("status").intValue());
+	}
+
+	@Test
+	public void claimReadWhileQueueIsFullIsRefusedWithStatus503() throws Exception {
+		// Given one worker busy with a claim of another batch, and a queue of one taken by that batch's next claim
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final PdfGeneratorProcessor processor = mock(PdfGeneratorProcessor.class);
+		given(processor.getClaimReader()).willReturn(new ObjectMapper().readerFor(JsonNode.class));
+		final PdfRenderOptions options = PdfRenderOptions.defaults();
+		given(processor.generatePdfStream(eq(options), any(JsonNode.class))).willAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return new byte[0];
+		});
+		this.batchProcessor.shutdown();
+		this.batchProcessor = new PdfBatchProcessor(processor, 1, 1);
+		final Thread other = new Thread(() -> {
+			try {
+				generate("{\"First Name\":\"Jim\"}\n{\"First Name\":\"Bob\"}\n");
+			} catch (final IOException | PdfGeneratorException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		other.start();
+		final Map<String, byte[]> result;
+		try {
+			assertTrue("Expected other batch to start.", started.await(30, TimeUnit.SECONDS));
+			final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+			while (this.batchProcessor.getQueuedClaims() == 0) {
+				assertTrue("Expected other batch to queue its next claim.", System.nanoTime() < deadline);
+				Thread.sleep(10);
+			}
+
+			// When
+			result = generate("{\"First Name\":\"Sam\"}\n");
+		} finally {
+			release.countDown();
+			other.join();
+		}
+
+		// Then
+		final JsonNode manifest = new ObjectMapper().readTree(result.get("manifest.json"));
+		assertEquals("Refused claim status not as expected.", 503, manifest.get(0).get("status").intValue());
+		assertEquals("Refused claim file not as expected.", "claim-00000.error",
+				manifest.get(0).get("file").textValue());
+	}
+
+	@Before
+	public void setUp() {
+		this.batchProcessor = new PdfBatchProcessor(new PdfGeneratorProcessor(), 2, 100);
+	}
+
+	@After
+	public void tearDown() {
+		this.batchProcessor.shutdown();
+	}
+}
@@ -2,23 +2,49 @@ package uk.gov.dwp.gysp.pdf.processor;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSString;
 import org.apache.pdfbox.io.RandomAccessBuffer;
 import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.outline.PDOutlineItem;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 import uk.gov.dwp.gysp.pdf.Application;
+import uk.gov.dwp.gysp.pdf.InvalidJsonException;
+import uk.gov.dwp.gysp.pdf.JsonTooLargeException;
+import uk.gov.dwp.gysp.pdf.LimitedInputStream;
+import uk.gov.dwp.gysp.pdf.PdfEstimate;
+import uk.gov.dwp.gysp.pdf.PdfGenerator;
 import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.PdfLayoutSettings;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @SpringBootTest(classes={Application.class})
@@ -31,6 +57,21 @@ public class PdfGeneratorProcessorTest {
 		return pdfParser;
 	}
 
+	private static PdfGeneratorProcessor processor(final PdfGeneratorMetrics metrics, final PdfResultCache resultCache,
+			final PdfPageRenderPool pageRenderPool, final boolean deterministic) {
+		return new PdfGeneratorProcessor(metrics, resultCache, PdfMemoryBudget.unlimited(), pageRenderPool,
+				PdfTemplateRegistry.of(PdfTemplate.getDefault()), PdfLayoutSettings.getDefault(), deterministic, false);
+	}
+
+	private static String documentId(final byte[] pdf) throws IOException {
+		try (PDDocument document = PDDocument.load(pdf)) {
+			return ((COSString) document.getDocument().getDocumentID().get(0)).toHexString();
+		}
+	}
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	@Autowired
 	private PdfGeneratorProcessor processor;
 
@@ -53,6 +94,427 @@ public class PdfGeneratorProcessorTest {
 		assertEquals("First name value not as expected", "Jim", outputContents[1]);
 	}
 
+	@Test
+	public void confirmStreamedJsonCreatesSamePdfAsParsedJson() throws IOException, PdfGeneratorException {
+		// Given
+		final String json = "{\"Person\": {\"First Name\":\"Jim\", \"Aliases\": [\"Jimbo\", {\"Surname\":\"Nameless\"}]}}";
+
+		// When
+		final byte[] result = this.processor.generatePdfStream(PdfRenderOptions.defaults(),
+				new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		assertArrayEquals("Streamed json should produce the same pdf as parsed json.",
+				this.processor.generatePdfStream(new ObjectMapper().readTree(json)), result);
+	}
+
+	@Test
+	public void confirmLongStreamedJsonCreatesSamePdfAsParsedJson() throws IOException, PdfGeneratorException {
+		// Given a claim running to several pages, which is written a page at a time when streamed
+		final StringBuilder json = new StringBuilder("{\"Stuff\": [");
+		for (int i = 0; i < 100; i++) {
+			json.append(i > 0 ? "," : "").append(String.format("{\"First Name%s\":\"Jim%s\"}", i, i));
+		}
+		json.append("]}");
+
+		// When
+		final byte[] result = this.processor.generatePdfStream(PdfRenderOptions.defaults(),
+				new ByteArrayInputStream(json.toString().getBytes(StandardCharsets.UTF_8)));
+
+		// Then
+		try (PDDocument generated = PDDocument.load(result)) {
+			assertTrue("Claim expected to run past one page.", generated.getNumberOfPages() > 1);
+		}
+		assertArrayEquals("Streamed json should produce the same pdf as parsed json.",
+				this.processor.generatePdfStream(new ObjectMapper().readTree(json.toString())), result);
+	}
+
+	@Test(expected = InvalidJsonException.class)
+	public void invalidStreamedJsonIsRejected() throws PdfGeneratorException {
+		this.processor.generatePdfStream(PdfRenderOptions.defaults(),
+				new ByteArrayInputStream("{\"First Name\":".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expected = InvalidJsonException.class)
+	public void streamedJsonWithDuplicateFieldIsRejected() throws PdfGeneratorException {
+		this.processor.generatePdfStream(PdfRenderOptions.defaults(),
+				new ByteArrayInputStream("{\"Name\":\"Jim\",\"Name\":\"Bob\"}".getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test(expected = JsonTooLargeException.class)
+	public void streamedJsonOverLimitIsRejected() throws PdfGeneratorException {
+		this.processor.generatePdfStream(PdfRenderOptions.defaults(), new LimitedInputStream(
+				new ByteArrayInputStream("{\"First Name\":\"Jim\"}".getBytes(StandardCharsets.UTF_8)), 10));
+	}
+
+	@Test
+	public void confirmPdfWrittenToOutputStreamMatchesPdfBytes() throws IOException, PdfGeneratorException {
+		// Given
+		final JsonNode json = new ObjectMapper().readTree("{\"Person\": {\"First Name\":\"Jim\", \"Surname\":\"Nameless\"}}");
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		// When
+		this.processor.generatePdf(PdfRenderOptions.defaults(), json, output);
+
+		// Then
+		assertArrayEquals("Pdf written to stream should match pdf bytes.", this.processor.generatePdfStream(json),
+				output.toByteArray());
+	}
+
+	@Test
+	public void pdfSavedWhileAnotherIsSavedOnTheSameThreadIsNotCorrupted() throws IOException, PdfGeneratorException {
+		// Given an output stream that generates another pdf on the same thread when first written to
+		final JsonNode json = new ObjectMapper().readTree("{\"Person\": {\"First Name\":\"Jim\"}}");
+		final JsonNode other = new ObjectMapper().readTree("{\"Person\": {\"First Name\":\"Bob\"}}");
+		final ByteArrayOutputStream otherOutput = new ByteArrayOutputStream();
+		final ByteArrayOutputStream output = new ByteArrayOutputStream() {
+
+			@Override
+			public synchronized void write(final byte[] b, final int off, final int len) {
+				if (otherOutput.size() == 0) {
+					try {
+						PdfGeneratorProcessorTest.this.processor.generatePdf(PdfRenderOptions.defaults(), other,
+								otherOutput);
+					} catch (final PdfGeneratorException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				super.write(b, off, len);
+			}
+		};
+
+		// When
+		this.processor.generatePdf(PdfRenderOptions.defaults(), json, output);
+
+		// Then
+		assertArrayEquals("Pdf written to stream should match pdf bytes.", this.processor.generatePdfStream(json),
+				output.toByteArray());
+		assertArrayEquals("Pdf written while another was saved should match pdf bytes.",
+				this.processor.generatePdfStream(other), otherOutput.toByteArray());
+	}
+
+	@Test
+	public void estimateMatchesGeneratedPdf() throws IOException, PdfGeneratorException {
+		// Given
+		final ObjectNode json = new ObjectMapper().createObjectNode();
+		for (int i = 0; i < 100; i++) {
+			json.put("Question " + i, "The answer to question number " + i + " of the claim");
+		}
+
+		// When
+		final PdfEstimate estimate = this.processor.estimate(PdfRenderOptions.defaults(), json);
+
+		// Then
+		try (PDDocument generated = PDDocument.load(this.processor.generatePdfStream(json))) {
+			assertEquals("Page count not as expected.", generated.getNumberOfPages(), estimate.getPages());
+		}
+		final int size = this.processor.generatePdfStream(json).length;
+		assertEquals("Size estimate too far out.", size, estimate.getBytes(), size * 0.15);
+	}
+
+	@Test
+	public void pagesRenderedConcurrentlyMatchPagesRenderedInOrder() throws IOException, PdfGeneratorException {
+		// Given
+		final PdfPageRenderPool pageRenderPool = new PdfPageRenderPool(4, 2);
+		final PdfGeneratorProcessor parallelProcessor = processor(PdfGeneratorMetrics.global(),
+				PdfResultCache.disabled(), pageRenderPool, true);
+		final ObjectNode json = new ObjectMapper().createObjectNode();
+		for (int i = 0; i < 300; i++) {
+			json.putObject("Section " + i).put("Náme " + i, "Ĵim Ŋameless " + i);
+		}
+
+		// When
+		final byte[] parallel;
+		try {
+			parallel = parallelProcessor.generatePdfStream(json);
+		} finally {
+			pageRenderPool.shutdown();
+		}
+
+		// Then
+		assertArrayEquals("Pdf rendered concurrently should match pdf rendered in order.",
+				this.processor.generatePdfStream(json), parallel);
+	}
+
+	@Test
+	public void generatedPdfIsRecordedInMetrics() throws IOException, PdfGeneratorException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfGeneratorProcessor processor = processor(new PdfGeneratorMetrics(registry),
+				PdfResultCache.disabled(), PdfPageRenderPool.disabled(), true);
+		final JsonNode json = new ObjectMapper().readTree("{\"Person\": {\"First Name\":\"Jim\", \"Surname\":\"Nameless\"}}");
+
+		// When
+		final byte[] result = processor.generatePdfStream(json);
+
+		// Then
+		assertEquals("Total time not recorded.", 1,
+				registry.get("pdf.generate.total").tags("input", "tree", "pages", "1").timer().count());
+		assertEquals("Layout time not recorded.", 1, registry.get("pdf.generate.layout").timer().count());
+		assertEquals("Save time not recorded.", 1, registry.get("pdf.generate.save").timer().count());
+		assertEquals("Field count not as expected.", 5, registry.get("pdf.generate.fields").summary().totalAmount(),
+				0);
+		assertEquals("Output size not as expected.", result.length,
+				registry.get("pdf.generate.output").summary().totalAmount(), 0);
+	}
+
+	@Test
+	public void cachedPdfIsReturnedWithoutRenderingAgain() throws IOException, PdfGeneratorException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfGeneratorProcessor processor = processor(new PdfGeneratorMetrics(registry),
+				PdfResultCache.create(onEviction -> new MemoryPdfResultStore(1024 * 1024, onEviction), registry),
+				PdfPageRenderPool.disabled(), true);
+		final ObjectMapper mapper = new ObjectMapper();
+
+		// When
+		final byte[] first = processor.generatePdfStream(mapper.readTree("{\"First Name\":\"Jim\"}"));
+		final byte[] second = processor.generatePdfStream(mapper.readTree("{ \"First Name\" : \"Jim\" }"));
+
+		// Then
+		assertArrayEquals("Cached pdf should match rendered pdf.", first, second);
+		assertEquals("Pdf should only be rendered once.", 1, registry.get("pdf.generate.total").timer().count());
+		assertEquals("Cache hit not recorded.", 1,
+				registry.get("pdf.cache.requests").tag("result", "hit").counter().count(), 0);
+		assertEquals("Cache miss not recorded.", 1,
+				registry.get("pdf.cache.requests").tag("result", "miss").counter().count(), 0);
+	}
+
+	@Test
+	public void failuresAreRecordedByCause() throws IOException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfGeneratorProcessor processor = processor(new PdfGeneratorMetrics(registry),
+				PdfResultCache.disabled(), PdfPageRenderPool.disabled(), true);
+
+		// When
+		try {
+			processor.generatePdfStream(new ObjectMapper().readTree("{\"Age\": 42}"));
+			fail("Expected unsupported node type to fail.");
+		} catch (final IllegalArgumentException | PdfGeneratorException e) {
+			// expected
+		}
+		try {
+			processor.generatePdfStream(PdfRenderOptions.defaults(),
+					new ByteArrayInputStream("{\"Age\":".getBytes(StandardCharsets.UTF_8)));
+			fail("Expected invalid json to fail.");
+		} catch (final PdfGeneratorException e) {
+			// expected
+		}
+
+		// Then
+		assertEquals("Unsupported node failure not recorded.", 1,
+				registry.get("pdf.generate.failures").tags("input", "tree", "cause", "unsupported_node").counter()
+						.count(), 0);
+		assertEquals("Invalid json failure not recorded.", 1,
+				registry.get("pdf.generate.failures").tags("input", "stream", "cause", "invalid_json").counter()
+						.count(), 0);
+	}
+
+	@Test
+	public void deterministicOutputIsIdentifiedByContent() throws IOException, PdfGeneratorException {
+		// Given
+		final PdfGeneratorProcessor freshProcessor;
+		try (InputStream template = getClass().getResourceAsStream("/Claim.pdf")) {
+			freshProcessor = new PdfGeneratorProcessor(PdfGeneratorMetrics.global(), PdfResultCache.disabled(),
+					PdfMemoryBudget.unlimited(), PdfPageRenderPool.disabled(),
+					PdfTemplateRegistry.of(PdfTemplate.load(template)), PdfLayoutSettings.getDefault(), true, false);
+		}
+		final ObjectMapper mapper = new ObjectMapper();
+
+		// When
+		final byte[] jim = this.processor.generatePdfStream(mapper.readTree("{\"First Name\":\"Jim\"}"));
+		final byte[] jimAgain = freshProcessor.generatePdfStream(mapper.readTree("{\"First Name\":\"Jim\"}"));
+		final byte[] tom = this.processor.generatePdfStream(mapper.readTree("{\"First Name\":\"Tom\"}"));
+
+		// Then
+		assertArrayEquals("Same claim should give the same pdf.", jim, jimAgain);
+		assertNotEquals("Different claims should have different document ids.", documentId(jim), documentId(tom));
+	}
+
+	@Test
+	public void sameClaimHasDifferentDocumentIdsForEachTemplateAndForPdfA() throws IOException, PdfGeneratorException {
+		// Given a registry with a copy of the built in template under another name
+		try (InputStream template = getClass().getResourceAsStream("/Claim.pdf")) {
+			Files.copy(template, this.folder.getRoot().toPath().resolve("pension.pdf"));
+		}
+		final PdfTemplateRegistry templates = new PdfTemplateRegistry(this.folder.getRoot().toURI().toString(),
+				"claim", false);
+		final PdfGeneratorProcessor plain = new PdfGeneratorProcessor(PdfGeneratorMetrics.global(),
+				PdfResultCache.disabled(), PdfMemoryBudget.unlimited(), PdfPageRenderPool.disabled(), templates,
+				PdfLayoutSettings.getDefault(), true, false);
+		final PdfGeneratorProcessor pdfA = new PdfGeneratorProcessor(PdfGeneratorMetrics.global(),
+				PdfResultCache.disabled(), PdfMemoryBudget.unlimited(), PdfPageRenderPool.disabled(), templates,
+				PdfLayoutSettings.getDefault(), true, true);
+		final JsonNode claim = new ObjectMapper().readTree("{\"First Name\":\"Jim\"}");
+
+		// When
+		final String builtIn = documentId(plain.generatePdfStream(claim));
+		final String pension = documentId(plain.generatePdfStream(PdfRenderOptions.of("pension", null), claim));
+		final String builtInPdfA = documentId(pdfA.generatePdfStream(claim));
+
+		// Then
+		assertEquals("Built in template should give the same document id in any registry.",
+				documentId(this.processor.generatePdfStream(claim)), builtIn);
+		assertNotEquals("Different templates should give different document ids.", builtIn, pension);
+		assertNotEquals("PDF/A should give a different document id.", builtIn, builtInPdfA);
+	}
+
+	@Test
+	public void claimsNestedDifferentlyHaveDifferentDocumentIdsOnlyWhenIndented()
+			throws IOException, PdfGeneratorException {
+		// Given the same questions and answers, with the last one nested in one claim and not the other
+		final ObjectMapper mapper = new ObjectMapper();
+		final JsonNode nested = mapper.readTree("{\"Person\": {\"Name\":\"Jim\", \"Age\":\"42\"}}");
+		final JsonNode flat = mapper.readTree("{\"Person\": {\"Name\":\"Jim\"}, \"Age\":\"42\"}");
+		final PdfRenderOptions indented = PdfRenderOptions.of(null, PdfLayoutSettings.builder().indent(12).build());
+
+		// Then
+		assertEquals("Claims that look the same should have the same document id.",
+				documentId(this.processor.generatePdfStream(nested)),
+				documentId(this.processor.generatePdfStream(flat)));
+		assertNotEquals("Claims that look different should have different document ids.",
+				documentId(this.processor.generatePdfStream(indented, nested)),
+				documentId(this.processor.generatePdfStream(indented, flat)));
+	}
+
+	@Test
+	public void nonDeterministicOutputHasUniqueDocumentIds() throws IOException, PdfGeneratorException {
+		// Given
+		final PdfGeneratorProcessor processor = processor(PdfGeneratorMetrics.global(),
+				PdfResultCache.disabled(), PdfPageRenderPool.disabled(), false);
+		final JsonNode json = new ObjectMapper().readTree("{\"First Name\":\"Jim\"}");
+
+		// When
+		final byte[] first = processor.generatePdfStream(json);
+		final byte[] second = processor.generatePdfStream(json);
+
+		// Then
+		assertNotEquals("Each pdf should have its own document id.", documentId(first), documentId(second));
+	}
+
+	@Test
+	public void nonDeterministicOutputIsNotCached() throws IOException, PdfGeneratorException {
+		// Given
+		final PdfResultCache cache = PdfResultCache
+				.create(onEviction -> new MemoryPdfResultStore(1 << 20, onEviction), new SimpleMeterRegistry());
+		final PdfGeneratorProcessor processor = processor(PdfGeneratorMetrics.global(), cache,
+				PdfPageRenderPool.disabled(), false);
+		final JsonNode json = new ObjectMapper().readTree("{\"First Name\":\"Jim\"}");
+
+		// When
+		final byte[] first = processor.generatePdfStream(json);
+		final byte[] second = processor.generatePdfStream(json);
+
+		// Then
+		assertNotEquals("Repeated claim should not be answered from the cache.", documentId(first),
+				documentId(second));
+	}
+
+	@Test
+	public void bufferedSaveMatchesDirectSave() throws IOException, PdfGeneratorException {
+		// Given a claim that saves to more than the save buffer
+		final ObjectNode json = new ObjectMapper().createObjectNode();
+		for (int i = 0; i < 400; i++) {
+			json.put("Question " + i, "Answer " + i);
+		}
+		final COSArray documentId;
+		try (PDDocument generated = PDDocument.load(this.processor.generatePdfStream(json))) {
+			documentId = generated.getDocument().getDocumentID();
+		}
+		final ByteArrayOutputStream direct = new ByteArrayOutputStream();
+		try (PDDocument document = new PdfGenerator(json).generate()) {
+			document.getDocument().getTrailer().setItem(COSName.ID, documentId);
+			document.save(direct);
+		}
+
+		// When
+		final ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+		this.processor.generatePdf(PdfRenderOptions.defaults(), json, buffered);
+
+		// Then
+		assertTrue("Expected pdf larger than the save buffer.", direct.size() > 16 * 1024);
+		assertArrayEquals("Buffered save should match direct save.", direct.toByteArray(), buffered.toByteArray());
+	}
+
+	@Test
+	public void bundleHasEveryClaimWithBookmarksAndSharedFonts() throws IOException, PdfGeneratorException {
+		// Given
+		final ObjectMapper mapper = new ObjectMapper();
+		final ObjectNode longClaim = mapper.createObjectNode();
+		for (int i = 0; i < 60; i++) {
+			longClaim.put("Question " + i, "Answer " + i);
+		}
+		final JsonNode[] claims = { mapper.readTree("{\"First Name\":\"Jim\"}"), longClaim,
+				mapper.readTree("{\"Surname\":\"Nameless\"}") };
+		final StringBuilder input = new StringBuilder();
+		int expectedPages = 0;
+		long separateBytes = 0;
+		final int[] firstPages = new int[claims.length];
+		for (int index = 0; index < claims.length; index++) {
+			input.append(claims[index]).append('\n');
+			final byte[] pdf = this.processor.generatePdfStream(claims[index]);
+			separateBytes += pdf.length;
+			firstPages[index] = expectedPages;
+			try (PDDocument document = PDDocument.load(pdf)) {
+				expectedPages += document.getNumberOfPages();
+			}
+		}
+
+		// When
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		this.processor.generatePdfBundle(PdfRenderOptions.defaults(),
+				new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8)), output);
+
+		// Then
+		try (PDDocument bundle = PDDocument.load(output.toByteArray())) {
+			assertEquals("Page count not as expected.", expectedPages, bundle.getNumberOfPages());
+			PDOutlineItem bookmark = bundle.getDocumentCatalog().getDocumentOutline().getFirstChild();
+			for (int index = 0; index < claims.length; index++) {
+				assertNotNull("Expected a bookmark for each claim.", bookmark);
+				assertEquals("Bookmark title not as expected.", "Claim " + (index + 1), bookmark.getTitle());
+				assertEquals("Bookmark page not as expected.", firstPages[index],
+						bundle.getPages().indexOf(bookmark.findDestinationPage(bundle)));
+				bookmark = bookmark.getNextSibling();
+			}
+			final PDFTextStripper stripper = new PDFTextStripper();
+			stripper.setStartPage(firstPages[2] + 1);
+			assertTrue("Last claim not as expected.", stripper.getText(bundle).contains("Nameless"));
+			assertEquals("Fonts should be embedded once.", 2, bundle.getDocument().getObjectsByType(COSName.FONT)
+					.stream().filter(font -> COSName.TYPE0.equals(((COSDictionary) font.getObject())
+							.getCOSName(COSName.SUBTYPE))).count());
+		}
+		assertTrue("Bundle should be smaller than the separate pdfs.", output.size() < separateBytes);
+	}
+
+	@Test
+	public void bundleLargerThanLimitOfSmallClaimsIsGeneratedInFull() throws IOException, PdfGeneratorException {
+		// Given claims of a few hundred bytes each, coming to several times the limit
+		final int limit = 16 * 1024;
+		final int claims = 200;
+		final StringBuilder input = new StringBuilder();
+		for (int i = 0; i < claims; i++) {
+			input.append(String.format("{\"First Name\":\"Jim%s\", \"Details\":\"%0300d\"}%n", i, i));
+		}
+		final byte[] bytes = input.toString().getBytes(StandardCharsets.UTF_8);
+		assertTrue("Bundle expected to be larger than the limit.", bytes.length > 3 * limit);
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		// When
+		this.processor.generatePdfBundle(PdfRenderOptions.defaults(),
+				new LimitedInputStream(new ByteArrayInputStream(bytes), limit), output);
+
+		// Then
+		try (PDDocument bundle = PDDocument.load(output.toByteArray())) {
+			int bookmarks = 0;
+			for (PDOutlineItem bookmark = bundle.getDocumentCatalog().getDocumentOutline()
+					.getFirstChild(); bookmark != null; bookmark = bookmark.getNextSibling()) {
+				bookmarks++;
+			}
+			assertEquals("Expected a bookmark for every claim.", claims, bookmarks);
+		}
+	}
+
 	@Test
 	public void emptyJsonReturnsStream() throws IOException, PdfGeneratorException {
 		// Given
@@ -0,0 +1,98 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorBusyException;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+import uk.gov.dwp.gysp.pdf.PdfLayoutSettings;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+public class PdfMemoryBudgetTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void documentIsRefusedWhenBudgetIsSpent() throws IOException, PdfGeneratorException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfMemoryBudget budget = new PdfMemoryBudget(64 * 1024, 64 * 1024, 0,
+				this.folder.getRoot().getPath(), new PdfGeneratorMetrics(registry));
+
+		// When
+		try (PdfMemoryBudget.Allocation allocation = budget.allocate()) {
+			assertEquals("Budget should be spent.", 0, registry.get("pdf.memory.available").gauge().value(), 0);
+			try {
+				budget.allocate();
+				fail("Expected allocation past the budget to be refused.");
+			} catch (final PdfGeneratorBusyException e) {
+				// expected
+			}
+		}
+
+		// Then
+		assertEquals("Refusal not recorded.", 1, registry.get("pdf.memory.refused").counter().count(), 0);
+		assertEquals("Budget should be released.", 64 * 1024, registry.get("pdf.memory.available").gauge().value(),
+				0);
+		budget.allocate().close();
+	}
+
+	@Test
+	public void spilledDocumentMatchesDocumentKeptInMemory() throws IOException, PdfGeneratorException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfGeneratorMetrics metrics = new PdfGeneratorMetrics(registry);
+		final PdfGeneratorProcessor spilling = new PdfGeneratorProcessor(metrics, PdfResultCache.disabled(),
+				new PdfMemoryBudget(1024, -1, 0, this.folder.getRoot().getPath(), metrics), PdfPageRenderPool.disabled(),
+				PdfTemplateRegistry.of(PdfTemplate.getDefault()), PdfLayoutSettings.getDefault(), true, false);
+		final JsonNode json = new ObjectMapper()
+				.readTree("{\"Person\": {\"First Name\":\"Jim\", \"Surname\":\"Nameless\"}}");
+
+		// When
+		final byte[] spilled = spilling.generatePdfStream(json);
+
+		// Then
+		assertArrayEquals("Spilled pdf should match pdf kept in memory.", new PdfGeneratorProcessor()
+				.generatePdfStream(json), spilled);
+		assertEquals("Spill not recorded.", 1, registry.get("pdf.memory.spills").counter().count(), 0);
+		try (Stream<Path> files = Files.walk(this.folder.getRoot().toPath())) {
+			assertEquals("Scratch files should be removed.", 0, files.filter(Files::isRegularFile).count());
+		}
+	}
+
+	@Test
+	public void scratchDirectoryIsOnlyCreatedWhenNoneIsFree() throws IOException, PdfGeneratorException {
+		// Given
+		final PdfMemoryBudget budget = new PdfMemoryBudget(1024, -1, 0, this.folder.getRoot().getPath(),
+				new PdfGeneratorMetrics(new SimpleMeterRegistry()));
+		final File first;
+		try (PdfMemoryBudget.Allocation allocation = budget.allocate()) {
+			first = allocation.getMemoryUsageSetting().getTempDir();
+		}
+
+		// When
+		try (PdfMemoryBudget.Allocation reused = budget.allocate();
+				PdfMemoryBudget.Allocation concurrent = budget.allocate()) {
+
+			// Then
+			assertEquals("Free scratch directory should be reused.", first,
+					reused.getMemoryUsageSetting().getTempDir());
+			assertNotEquals("Scratch directory in use should not be shared.", first,
+					concurrent.getMemoryUsageSetting().getTempDir());
+		}
+		assertEquals("Only the scratch directories used at once should be created.", 2,
+				this.folder.getRoot().list().length);
+	}
+}
@@ -0,0 +1,95 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Test;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorBusyException;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+public class PdfRenderExecutorTest {
+
+	private PdfRenderExecutor renderExecutor;
+
+	private static JsonNode json() throws IOException {
+		return new ObjectMapper().readTree("{\"First Name\":\"Jim\"}");
+	}
+
+	@Test
+	public void generatePdfStreamCompletesWithSameBytesAsProcessor() throws Exception {
+		// Given
+		final PdfGeneratorProcessor processor = new PdfGeneratorProcessor();
+		this.renderExecutor = new PdfRenderExecutor(processor, 2, 10);
+
+		// When
+		final byte[] result = this.renderExecutor.generatePdfStream(PdfRenderOptions.defaults(), json()).get(30,
+				TimeUnit.SECONDS);
+
+		// Then
+		assertArrayEquals("Rendered pdf not as expected.", processor.generatePdfStream(json()), result);
+	}
+
+	@Test
+	public void generatePdfStreamCompletesExceptionallyWhenGenerationFails() throws Exception {
+		// Given
+		final PdfGeneratorProcessor processor = mock(PdfGeneratorProcessor.class);
+		final PdfGeneratorException failure = new PdfGeneratorException("Unable to generate pdf document");
+		given(processor.generatePdfStream(eq(PdfRenderOptions.defaults()), any(JsonNode.class))).willThrow(failure);
+		this.renderExecutor = new PdfRenderExecutor(processor, 1, 1);
+
+		// When
+		try {
+			this.renderExecutor.generatePdfStream(PdfRenderOptions.defaults(), json()).get(30, TimeUnit.SECONDS);
+			fail("Expected generation to fail.");
+		} catch (final ExecutionException e) {
+			// Then
+			assertSame("Failure not as expected.", failure, e.getCause());
+		}
+	}
+
+	@Test(expected = PdfGeneratorBusyException.class)
+	public void generatePdfStreamIsRefusedWhenQueueIsFull() throws Exception {
+		// Given
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final PdfRenderOptions options = PdfRenderOptions.defaults();
+		final PdfGeneratorProcessor processor = mock(PdfGeneratorProcessor.class);
+		given(processor.generatePdfStream(eq(options), any(JsonNode.class))).willAnswer(invocation -> {
+			started.countDown();
+			release.await();
+			return new byte[0];
+		});
+		this.renderExecutor = new PdfRenderExecutor(processor, 1, 1);
+
+		try {
+			final CompletableFuture<byte[]> running = this.renderExecutor.generatePdfStream(options, json());
+			assertTrue("Expected first pdf to start.", started.await(30, TimeUnit.SECONDS));
+			final CompletableFuture<byte[]> queued = this.renderExecutor.generatePdfStream(options, json());
+			assertFalse("Expected second pdf to be queued.", running.isDone() || queued.isDone());
+
+			// When
+			this.renderExecutor.generatePdfStream(options, json());
+		} finally {
+			release.countDown();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		if (this.renderExecutor != null) {
+			this.renderExecutor.shutdown();
+		}
+	}
+}
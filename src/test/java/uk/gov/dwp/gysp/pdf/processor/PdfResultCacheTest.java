@@ -0,0 +1,140 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.dwp.gysp.pdf.PdfGeneratorException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class PdfResultCacheTest {
+
+	private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void keyIgnoresFormattingButNotFieldOrder() throws IOException {
+		// Given
+		final String key = PdfResultCache.key(OBJECT_MAPPER.readTree("{\"First Name\":\"Jim\",\"Surname\":\"Nameless\"}"));
+
+		// Then
+		assertEquals("Formatting should not change the key.", key, PdfResultCache
+				.key(OBJECT_MAPPER.readTree("{\n  \"First Name\" : \"Jim\",\n  \"Surname\" : \"Nameless\"\n}")));
+		assertNotEquals("Field order should change the key.", key,
+				PdfResultCache.key(OBJECT_MAPPER.readTree("{\"Surname\":\"Nameless\",\"First Name\":\"Jim\"}")));
+	}
+
+	@Test
+	public void disabledCacheAlwaysRenders() throws IOException, PdfGeneratorException {
+		// Given
+		final PdfResultCache cache = PdfResultCache.disabled();
+		final AtomicInteger renders = new AtomicInteger();
+
+		// When
+		cache.get(OBJECT_MAPPER.readTree("{}"), () -> new byte[renders.incrementAndGet()]);
+		cache.get(OBJECT_MAPPER.readTree("{}"), () -> new byte[renders.incrementAndGet()]);
+
+		// Then
+		assertFalse("Cache should be disabled.", cache.isEnabled());
+		assertEquals("Expected every claim to be rendered.", 2, renders.get());
+	}
+
+	@Test
+	public void memoryStoreEvictsOnceFull() throws IOException, PdfGeneratorException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfResultCache cache = PdfResultCache
+				.create(onEviction -> new MemoryPdfResultStore(100, onEviction), registry);
+
+		// When
+		for (int i = 0; i < 5; i++) {
+			cache.get(OBJECT_MAPPER.readTree("{\"Claim\":\"" + i + "\"}"), () -> new byte[40]);
+		}
+
+		// Then
+		assertTrue("Expected evictions to be recorded.",
+				registry.get("pdf.cache.evictions").counter().count() >= 3);
+	}
+
+	@Test
+	public void diskStoreKeepsPdfsAcrossInstances() throws IOException, PdfGeneratorException {
+		// Given
+		final Path directory = this.folder.getRoot().toPath().resolve("cache");
+		final byte[] pdf = { 1, 2, 3 };
+		final PdfResultCache first = PdfResultCache.create(
+				onEviction -> new DiskPdfResultStore(directory, 1024, onEviction), new SimpleMeterRegistry());
+		first.get(OBJECT_MAPPER.readTree("{\"First Name\":\"Jim\"}"), () -> pdf);
+
+		// When
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfResultCache second = PdfResultCache.create(
+				onEviction -> new DiskPdfResultStore(directory, 1024, onEviction), registry);
+		final byte[] result = second.get(OBJECT_MAPPER.readTree("{\"First Name\":\"Jim\"}"), () -> {
+			throw new PdfGeneratorException("Expected cached pdf");
+		});
+
+		// Then
+		assertArrayEquals("Cached pdf not as expected.", pdf, result);
+		assertEquals("Cache hit not recorded.", 1,
+				registry.get("pdf.cache.requests").tag("result", "hit").counter().count(), 0);
+	}
+
+	@Test
+	public void diskStoreEvictsOnceFull() throws IOException, PdfGeneratorException {
+		// Given
+		final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		final PdfResultCache cache = PdfResultCache.create(
+				onEviction -> new DiskPdfResultStore(this.folder.getRoot().toPath(), 100, onEviction), registry);
+
+		// When
+		for (int i = 0; i < 5; i++) {
+			cache.get(OBJECT_MAPPER.readTree("{\"Claim\":\"" + i + "\"}"), () -> new byte[40]);
+		}
+
+		// Then
+		assertEquals("Evictions not as expected.", 3, registry.get("pdf.cache.evictions").counter().count(), 0);
+	}
+
+	@Test
+	public void diskStoreCountsConcurrentWritesOfOneKeyOnce() throws Exception {
+		// Given
+		final AtomicInteger evictions = new AtomicInteger();
+		final DiskPdfResultStore store = new DiskPdfResultStore(this.folder.getRoot().toPath(), 100,
+				evictions::incrementAndGet);
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		// When
+		try {
+			final List<Future<?>> writes = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				writes.add(executor.submit(() -> {
+					store.put("claim", new byte[40]);
+					return null;
+				}));
+			}
+			for (final Future<?> write : writes) {
+				write.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		store.put("other", new byte[40]);
+
+		// Then
+		assertEquals("Nothing should be evicted.", 0, evictions.get());
+		assertNotNull("Pdf should be kept.", store.get("claim"));
+	}
+}
@@ -0,0 +1,158 @@
+package uk.gov.dwp.gysp.pdf.processor;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import uk.gov.dwp.gysp.pdf.PdfTemplate;
+import uk.gov.dwp.gysp.pdf.UnknownTemplateException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class PdfTemplateRegistryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private PdfTemplateRegistry registry;
+
+	private static void writeTemplate(final Path file, final PDRectangle mediaBox) throws IOException {
+		try (PDDocument document = new PDDocument()) {
+			document.addPage(new PDPage(mediaBox));
+			document.save(file.toFile());
+		}
+	}
+
+	@After
+	public void close() throws IOException {
+		if (this.registry != null) {
+			this.registry.close();
+		}
+	}
+
+	@Test
+	public void templatesInLocationAreRegisteredAlongsideBuiltInTemplate()
+			throws IOException, UnknownTemplateException {
+		// Given
+		writeTemplate(this.folder.getRoot().toPath().resolve("pension.pdf"), PDRectangle.A5);
+
+		// When
+		this.registry = new PdfTemplateRegistry(this.folder.getRoot().toURI().toString(), "claim", false);
+
+		// Then
+		assertSame("Built in template should be the default.", PdfTemplate.getDefault(),
+				this.registry.get(null).getTemplate());
+		assertEquals("Template from location not as expected.", PDRectangle.A5.toString(),
+				this.registry.get("pension").getTemplate().getMediaBox().toString());
+		assertNotEquals("Templates should have different keys.", this.registry.get("claim").getKey(),
+				this.registry.get("pension").getKey());
+	}
+
+	@Test
+	public void templateWithoutPagesIsLeftOutAtStartupAndKeepsOldOneOnRefresh()
+			throws IOException, UnknownTemplateException {
+		// Given
+		final Path file = this.folder.getRoot().toPath().resolve("pension.pdf");
+		final Path broken = this.folder.getRoot().toPath().resolve("broken.pdf");
+		writeTemplate(file, PDRectangle.A5);
+		try (PDDocument document = new PDDocument()) {
+			document.save(broken.toFile());
+		}
+
+		// When
+		this.registry = new PdfTemplateRegistry(this.folder.getRoot().toURI().toString(), "claim", false);
+
+		// Then
+		try {
+			this.registry.get("broken");
+			fail("Expected template without pages to be left out.");
+		} catch (final UnknownTemplateException e) {
+			// expected
+		}
+
+		// When
+		Files.copy(broken, file, StandardCopyOption.REPLACE_EXISTING);
+		this.registry.refresh(file);
+
+		// Then
+		assertEquals("Template should be kept.", PDRectangle.A5.toString(),
+				this.registry.get("pension").getTemplate().getMediaBox().toString());
+	}
+
+	@Test(expected = UnknownTemplateException.class)
+	public void unknownTemplateIsRefused() throws IOException, UnknownTemplateException {
+		// Given
+		this.registry = new PdfTemplateRegistry("", "claim", false);
+
+		// When
+		this.registry.get("pension");
+	}
+
+	@Test
+	public void refreshReplacesChangedTemplateAndRemovesDeletedOne() throws IOException, UnknownTemplateException {
+		// Given
+		final Path file = this.folder.getRoot().toPath().resolve("pension.pdf");
+		writeTemplate(file, PDRectangle.A5);
+		this.registry = new PdfTemplateRegistry(this.folder.getRoot().toURI().toString(), "claim", false);
+		final PdfTemplateRegistry.RegisteredTemplate before = this.registry.get("pension");
+
+		// When
+		writeTemplate(file, PDRectangle.A4);
+		this.registry.refresh(file);
+
+		// Then
+		final PdfTemplateRegistry.RegisteredTemplate after = this.registry.get("pension");
+		assertEquals("Template should be reloaded.", PDRectangle.A4.toString(),
+				after.getTemplate().getMediaBox().toString());
+		assertNotEquals("Reloaded template should have a new key.", before.getKey(), after.getKey());
+		try (PDDocument document = before.getTemplate().newDocument()) {
+			assertEquals("Replaced template should still be usable.", PDRectangle.A5.toString(),
+					document.getPage(0).getMediaBox().toString());
+		}
+
+		// When
+		Files.delete(file);
+		this.registry.refresh(file);
+
+		// Then
+		try {
+			this.registry.get("pension");
+			fail("Expected removed template to be unknown.");
+		} catch (final UnknownTemplateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void templateAddedToWatchedDirectoryIsLoaded() throws IOException, InterruptedException {
+		// Given
+		this.registry = new PdfTemplateRegistry(this.folder.getRoot().toURI().toString(), "claim", true);
+
+		// When
+		writeTemplate(this.folder.getRoot().toPath().resolve("pension.pdf"), PDRectangle.A5);
+
+		// Then
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+		while (true) {
+			try {
+				assertEquals("Added template not as expected.", PDRectangle.A5.toString(),
+						this.registry.get("pension").getTemplate().getMediaBox().toString());
+				return;
+			} catch (final UnknownTemplateException e) {
+				if (System.nanoTime() > deadline) {
+					fail("Expected added template to be loaded.");
+				}
+				Thread.sleep(50);
+			}
+		}
+	}
+}